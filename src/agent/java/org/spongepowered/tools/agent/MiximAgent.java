@@ -98,7 +98,10 @@ public class MiximAgent implements IHotSwap {
         }
 
         /**
-         * Re-apply all mixims to the supplied list of target classes.
+         * Re-apply all mixims to the supplied list of target classes. All of
+         * the targets are transformed first and then redefined in a single
+         * batch, so that the VM only has to reach a safepoint once and no
+         * targets are redefined if any of them fail to transform.
          * 
          * @param targets Target classes to re-transform
          * @return true if all targets were transformed, false if transformation
@@ -106,6 +109,7 @@ public class MiximAgent implements IHotSwap {
          */
         private boolean reApplyMixims(List<String> targets) {
             IMiximService service = MiximService.getService();
+            List<ClassDefinition> definitions = new ArrayList<ClassDefinition>(targets.size());
             
             for (String target : targets) {
                 String targetName = target.replace('/', '.');
@@ -118,12 +122,24 @@ public class MiximAgent implements IHotSwap {
                         return false;
                     }
                     targetBytecode = MiximAgent.this.classTransformer.transformClassBytes(null, targetName, targetBytecode);
-                    MiximAgent.instrumentation.redefineClasses(new ClassDefinition(targetClass, targetBytecode));
+                    definitions.add(new ClassDefinition(targetClass, targetBytecode));
                 } catch (Throwable th) {
                     MiximAgent.logger.error("Error while re-transforming target class " + target, th);
                     return false;
                 }
             }
+            
+            if (definitions.isEmpty()) {
+                return true;
+            }
+            
+            try {
+                MiximAgent.logger.debug("Redefining {} target classes", definitions.size());
+                MiximAgent.instrumentation.redefineClasses(definitions.toArray(new ClassDefinition[definitions.size()]));
+            } catch (Throwable th) {
+                MiximAgent.logger.error("Error while redefining target classes " + targets, th);
+                return false;
+            }
             return true;
         }
     }
@@ -0,0 +1,227 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.agent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Store for the original bytecode of mixim target classes. Bytecode is kept
+ * compressed in memory, and once the compressed size of the retained classes
+ * exceeds the configured limit the least recently used classes are moved to a
+ * temporary file which is read back if the class is needed again.
+ */
+class MiximAgentBytecodeStore {
+
+    private static final Logger logger = LogManager.getLogger("mixim.agent");
+
+    /**
+     * Maximum compressed size of the classes retained in memory
+     */
+    private final long memoryLimit;
+    
+    /**
+     * Compressed bytecode retained in memory, in access order
+     */
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(64, 0.75F, true);
+    
+    /**
+     * Position and length of compressed bytecode which has been written to the
+     * spill file
+     */
+    private final Map<String, long[]> spilled = new HashMap<String, long[]>();
+    
+    /**
+     * Current compressed size of {@link #memory}
+     */
+    private long memorySize;
+    
+    /**
+     * Spill file, created on first use
+     */
+    private RandomAccessFile spillFile;
+    
+    /**
+     * Set if the spill file could not be created or written, in which case
+     * classes are just retained in memory
+     */
+    private boolean spillFailed;
+
+    MiximAgentBytecodeStore(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+    
+    /**
+     * Get whether bytecode for the specified class is stored
+     * 
+     * @param name class name
+     */
+    synchronized boolean contains(String name) {
+        return this.memory.containsKey(name) || this.spilled.containsKey(name);
+    }
+    
+    /**
+     * Store bytecode for the specified class
+     * 
+     * @param name class name
+     * @param bytecode class bytecode
+     */
+    synchronized void put(String name, byte[] bytecode) {
+        this.retain(name, MiximAgentBytecodeStore.compress(bytecode));
+    }
+    
+    /**
+     * Get stored bytecode for the specified class
+     * 
+     * @param name class name
+     * @return bytecode or null if no bytecode is stored for the class
+     */
+    synchronized byte[] get(String name) {
+        byte[] compressed = this.memory.get(name);
+        if (compressed == null) {
+            long[] location = this.spilled.get(name);
+            if (location == null) {
+                return null;
+            }
+            try {
+                compressed = new byte[(int)location[1]];
+                this.spillFile.seek(location[0]);
+                this.spillFile.readFully(compressed);
+            } catch (IOException ex) {
+                MiximAgentBytecodeStore.logger.error("Error reading retained bytecode for {} from {}", name, ex.getMessage());
+                return null;
+            }
+            this.retain(name, compressed);
+        }
+        
+        try {
+            return MiximAgentBytecodeStore.decompress(compressed);
+        } catch (DataFormatException ex) {
+            MiximAgentBytecodeStore.logger.error("Retained bytecode for {} is corrupt: {}", name, ex.getMessage());
+            return null;
+        }
+    }
+    
+    private void retain(String name, byte[] compressed) {
+        byte[] previous = this.memory.put(name, compressed);
+        if (previous != null) {
+            this.memorySize -= previous.length;
+        }
+        this.memorySize += compressed.length;
+        
+        Iterator<Entry<String, byte[]>> iter = this.memory.entrySet().iterator();
+        while (this.memorySize > this.memoryLimit && this.memory.size() > 1 && iter.hasNext()) {
+            Entry<String, byte[]> eldest = iter.next();
+            if (!this.spill(eldest.getKey(), eldest.getValue())) {
+                break;
+            }
+            this.memorySize -= eldest.getValue().length;
+            iter.remove();
+        }
+    }
+    
+    private boolean spill(String name, byte[] compressed) {
+        if (this.spilled.containsKey(name)) {
+            // Target bytecode never changes so the spilled copy is still valid
+            return true;
+        }
+        if (this.spillFailed) {
+            return false;
+        }
+        
+        try {
+            if (this.spillFile == null) {
+                File file = File.createTempFile("mixim-hotswap", ".bin");
+                file.deleteOnExit();
+                this.spillFile = new RandomAccessFile(file, "rw");
+                MiximAgentBytecodeStore.logger.debug("Retaining hot-swap target bytecode in {}", file);
+            }
+            long position = this.spillFile.length();
+            this.spillFile.seek(position);
+            this.spillFile.write(compressed);
+            this.spilled.put(name, new long[] { position, compressed.length });
+            return true;
+        } catch (IOException ex) {
+            MiximAgentBytecodeStore.logger.warn("Could not spill hot-swap target bytecode to disk, retaining it in memory instead: {}",
+                    ex.getMessage());
+            this.spillFailed = true;
+            return false;
+        }
+    }
+    
+    private static byte[] compress(byte[] bytecode) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytecode);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytecode.length / 2 + 8);
+            out.write(bytecode.length >>> 24);
+            out.write(bytecode.length >>> 16);
+            out.write(bytecode.length >>> 8);
+            out.write(bytecode.length);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static byte[] decompress(byte[] compressed) throws DataFormatException {
+        int length = ((compressed[0] & 0xFF) << 24) | ((compressed[1] & 0xFF) << 16) | ((compressed[2] & 0xFF) << 8) | (compressed[3] & 0xFF);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed, 4, compressed.length - 4);
+            byte[] bytecode = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int count = inflater.inflate(bytecode, read, length - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Unexpected end of data");
+                }
+                read += count;
+            }
+            return bytecode;
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
@@ -35,6 +35,7 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixim.MiximEnvironment;
+import org.spongepowered.asm.mixim.MiximEnvironment.Option;
 import org.spongepowered.asm.util.Constants;
 
 /**
@@ -44,6 +45,11 @@ import org.spongepowered.asm.util.Constants;
 class MiximAgentClassLoader extends ClassLoader {
 
     private static final Logger logger = LogManager.getLogger("mixim.agent");
+    
+    /**
+     * Default memory limit for retained target bytecode, in KiB
+     */
+    private static final int DEFAULT_RETAINED_SIZE = 16384;
 
     /**
      * Mapping of mixim mixim classes to their fake classes
@@ -51,10 +57,11 @@ class MiximAgentClassLoader extends ClassLoader {
     private Map<Class<?>, byte[]> mixims = new HashMap<Class<?>, byte[]>();
 
     /**
-     * Mapping that keep track of bytecode for classes that are targeted by
-     * mixims
+     * Original bytecode for classes that are targeted by mixims, created when
+     * the first target is registered since the agent is initialised before
+     * the environment
      */
-    private Map<String, byte[]> targets = new HashMap<String, byte[]>();
+    private MiximAgentBytecodeStore targets;
 
     /**
      * Add a fake mixim class
@@ -82,19 +89,18 @@ class MiximAgentClassLoader extends ClassLoader {
      * @param classNode ASM tree node of the target class
      */
     void addTargetClass(String name, ClassNode classNode) {
-        synchronized (this.targets) {
-            if (this.targets.containsKey(name)) {
-                return;
-            }
-            try {
-                ClassWriter cw = new ClassWriter(0);
-                classNode.accept(cw);
-                this.targets.put(name, cw.toByteArray());
-            } catch (Exception ex) {
-                MiximAgentClassLoader.logger.error("Error storing original class bytecode for {} in mixim hotswap agent. {}: {}",
-                        name, ex.getClass().getName(), ex.getMessage());
-                MiximAgentClassLoader.logger.debug(ex);
-            }
+        MiximAgentBytecodeStore targets = this.getTargets();
+        if (targets.contains(name)) {
+            return;
+        }
+        try {
+            ClassWriter cw = new ClassWriter(0);
+            classNode.accept(cw);
+            targets.put(name, cw.toByteArray());
+        } catch (Exception ex) {
+            MiximAgentClassLoader.logger.error("Error storing original class bytecode for {} in mixim hotswap agent. {}: {}",
+                    name, ex.getClass().getName(), ex.getMessage());
+            MiximAgentClassLoader.logger.debug(ex);
         }
     }
 
@@ -115,8 +121,23 @@ class MiximAgentClassLoader extends ClassLoader {
      * @return Original bytecode
      */
     byte[] getOriginalTargetBytecode(String name) {
-        synchronized (this.targets) {
-            return this.targets.get(name);
+        return this.getTargets().get(name);
+    }
+    
+    private synchronized MiximAgentBytecodeStore getTargets() {
+        if (this.targets == null) {
+            this.targets = new MiximAgentBytecodeStore(MiximAgentClassLoader.getRetainedSize() * 1024L);
+        }
+        return this.targets;
+    }
+    
+    private static int getRetainedSize() {
+        String value = MiximEnvironment.getCurrentEnvironment().getOptionValue(Option.HOT_SWAP_RETAINED_SIZE);
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (RuntimeException ex) {
+            MiximAgentClassLoader.logger.warn("Invalid value {} for {}, using default", value, Option.HOT_SWAP_RETAINED_SIZE);
+            return MiximAgentClassLoader.DEFAULT_RETAINED_SIZE;
         }
     }
 
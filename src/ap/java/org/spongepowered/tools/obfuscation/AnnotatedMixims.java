@@ -127,6 +127,12 @@ final class AnnotatedMixims implements IMiximAnnotationProcessor, ITokenProvider
      * Resolved tokens for constraint validation
      */
     private final Map<String, Integer> tokenCache = new HashMap<String, Integer>();
+    
+    /**
+     * Type handles resolved during the current pass, handles are discarded at
+     * the start of each pass since later rounds may introduce new types
+     */
+    private final Map<String, TypeHandle> typeHandleCache = new HashMap<String, TypeHandle>();
 
     /**
      * Serialisable mixim target map
@@ -325,6 +331,30 @@ final class AnnotatedMixims implements IMiximAnnotationProcessor, ITokenProvider
         return CompilerEnvironment.JAVAC;
     }
 
+    /**
+     * Get whether the processor should take part in incremental compilation.
+     * Incremental processors must create all of their outputs via the filer,
+     * so this is not possible if any output is written to an explicit path.
+     */
+    public boolean isIncremental() {
+        if (this.getOption(SupportedOptions.DISABLE_INCREMENTAL, false)
+                || AnnotatedMixims.isExplicitPath(this.getOption(SupportedOptions.OUT_REFMAP_FILE))) {
+            return false;
+        }
+        
+        for (ObfuscationType obfType : ObfuscationType.types()) {
+            if (AnnotatedMixims.isExplicitPath(obfType.getOutputFileName())) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    private static boolean isExplicitPath(String fileName) {
+        return fileName != null && fileName.matches("^.*[\\\\/:].*$");
+    }
+
     /**
      * Write out generated mappings
      */
@@ -521,6 +551,8 @@ final class AnnotatedMixims implements IMiximAnnotationProcessor, ITokenProvider
      */
     public void onPassStarted() {
         this.miximsForPass.clear();
+        this.typeHandleCache.clear();
+        this.obf.getDataProvider().clearCache();
     }
 
     /**
@@ -622,7 +654,18 @@ final class AnnotatedMixims implements IMiximAnnotationProcessor, ITokenProvider
     @Override
     public TypeHandle getTypeHandle(String name) {
         name = name.replace('/', '.');
+        
+        // Failed lookups are cached as null, so check for the key
+        if (this.typeHandleCache.containsKey(name)) {
+            return this.typeHandleCache.get(name);
+        }
+        
+        TypeHandle handle = this.resolveTypeHandle(name);
+        this.typeHandleCache.put(name, handle);
+        return handle;
+    }
 
+    private TypeHandle resolveTypeHandle(String name) {
         Elements elements = this.processingEnv.getElementUtils();
         TypeElement element = elements.getTypeElement(name);
         if (element != null) {
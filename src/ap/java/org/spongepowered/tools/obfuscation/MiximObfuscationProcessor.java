@@ -37,11 +37,19 @@ import javax.tools.Diagnostic.Kind;
 
 import org.spongepowered.asm.mixim.Mixim;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Base class for mixim annotation processor modules
  */
 public abstract class MiximObfuscationProcessor extends AbstractProcessor {
     
+    /**
+     * Option used by dynamic processors to tell Gradle that they can run in
+     * aggregating incremental mode
+     */
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+    
     /**
      * Mixim info manager 
      */
@@ -91,7 +99,15 @@ public abstract class MiximObfuscationProcessor extends AbstractProcessor {
     
     @Override
     public Set<String> getSupportedOptions() {
-        return SupportedOptions.getAllOptions();
+        Set<String> options = SupportedOptions.getAllOptions();
+        if (this.mixims == null || !this.mixims.isIncremental()) {
+            return options;
+        }
+        
+        // Processors are declared as dynamic, opt in to Gradle's aggregating
+        // incremental mode unless incremental processing has been disabled or
+        // an output is written outside of the filer
+        return ImmutableSet.<String>builder().addAll(options).add(MiximObfuscationProcessor.GRADLE_AGGREGATING).build();
     }
     
 }
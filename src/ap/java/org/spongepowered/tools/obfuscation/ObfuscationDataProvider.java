@@ -24,8 +24,10 @@
  */
 package org.spongepowered.tools.obfuscation;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.spongepowered.asm.mixim.injection.selectors.ITargetSelectorRemappable;
@@ -53,6 +55,15 @@ public class ObfuscationDataProvider implements IObfuscationDataProvider {
      * Available obfuscation environments
      */
     private final List<ObfuscationEnvironment> environments;
+    
+    /**
+     * Memoised results of {@link #getObfEntryRecursive}, keyed by member.
+     * Hierarchy walks are repeated for every shadow, accessor and injector
+     * which references the same inherited member so this saves both the walk
+     * and the environment lookups. Entries are copied on the way out since
+     * callers are free to modify the returned data.
+     */
+    private final Map<String, ObfuscationData<?>> recursiveCache = new HashMap<String, ObfuscationData<?>>();
 
     public ObfuscationDataProvider(IMiximAnnotationProcessor ap, List<ObfuscationEnvironment> environments) {
         this.ap = ap;
@@ -65,7 +76,18 @@ public class ObfuscationDataProvider implements IObfuscationDataProvider {
      *      org.spongepowered.asm.mixim.injection.struct.MemberInfo)
      */
     @Override
+    @SuppressWarnings("unchecked")
     public <T> ObfuscationData<T> getObfEntryRecursive(final ITargetSelectorRemappable targetMember) {
+        String key = ObfuscationDataProvider.getCacheKey(targetMember);
+        ObfuscationData<T> cached = (ObfuscationData<T>)this.recursiveCache.get(key);
+        if (cached == null) {
+            cached = this.<T>resolveObfEntryRecursive(targetMember);
+            this.recursiveCache.put(key, cached);
+        }
+        return ObfuscationDataProvider.copy(cached);
+    }
+    
+    private <T> ObfuscationData<T> resolveObfEntryRecursive(final ITargetSelectorRemappable targetMember) {
         ObfuscationData<String> obfTargetNames = this.getObfClass(targetMember.getOwner());
         ObfuscationData<T> obfData = this.getObfEntry(targetMember);
         try {
@@ -84,6 +106,27 @@ public class ObfuscationDataProvider implements IObfuscationDataProvider {
         return obfData;
     }
 
+    /* (non-Javadoc)
+     * @see org.spongepowered.tools.obfuscation.interfaces
+     *      .IObfuscationDataProvider#clearCache()
+     */
+    @Override
+    public void clearCache() {
+        this.recursiveCache.clear();
+    }
+
+    private static String getCacheKey(ITargetSelectorRemappable member) {
+        return (member.isField() ? "F:" : "M:") + member.getOwner() + ";" + member.getName() + ";" + member.getDesc();
+    }
+    
+    private static <T> ObfuscationData<T> copy(ObfuscationData<T> data) {
+        ObfuscationData<T> copy = new ObfuscationData<T>();
+        for (ObfuscationType type : data) {
+            copy.put(type, data.get(type));
+        }
+        return copy;
+    }
+
     /**
      * Depending on the structure of the available obfuscation data, mappings
      * for inherited members may only be available on the specific superclass or
@@ -46,6 +46,7 @@ import org.spongepowered.tools.obfuscation.mapping.IMappingConsumer;
 import org.spongepowered.tools.obfuscation.mapping.IMappingProvider;
 import org.spongepowered.tools.obfuscation.mapping.IMappingWriter;
 import org.spongepowered.tools.obfuscation.mapping.IMappingConsumer.MappingSet;
+import org.spongepowered.tools.obfuscation.mapping.common.MappingProvider;
 import org.spongepowered.tools.obfuscation.mirror.TypeHandle;
 import org.spongepowered.tools.obfuscation.interfaces.IObfuscationEnvironment;
 import org.spongepowered.tools.obfuscation.interfaces.IMiximAnnotationProcessor;
@@ -126,6 +127,9 @@ public abstract class ObfuscationEnvironment implements IObfuscationEnvironment
         this.outFileName = type.getOutputFileName();
 
         this.mappingProvider = this.getMappingProvider(this.ap, this.ap.getProcessingEnvironment().getFiler());
+        if (this.mappingProvider instanceof MappingProvider) {
+            ((MappingProvider)this.mappingProvider).setCacheDir(this.getMappingCacheDir());
+        }
         this.mappingWriter = this.getMappingWriter(this.ap, this.ap.getProcessingEnvironment().getFiler());
     }
     
@@ -134,6 +138,18 @@ public abstract class ObfuscationEnvironment implements IObfuscationEnvironment
         return this.type.toString();
     }
     
+    /**
+     * Get the directory to cache compiled mappings in, returns the provider's
+     * default if not specified or null if caching is disabled
+     */
+    private File getMappingCacheDir() {
+        String cacheDir = this.ap.getOption(SupportedOptions.MAPPING_CACHE_DIR);
+        if (cacheDir == null) {
+            return MappingProvider.getDefaultCacheDir();
+        }
+        return "none".equalsIgnoreCase(cacheDir) ? null : new File(cacheDir);
+    }
+    
     protected abstract IMappingProvider getMappingProvider(Messager messager, Filer filer);
     
     protected abstract IMappingWriter getMappingWriter(Messager messager, Filer filer);
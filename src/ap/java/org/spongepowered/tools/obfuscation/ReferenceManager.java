@@ -25,7 +25,11 @@
 package org.spongepowered.tools.obfuscation;
 
 import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.List;
 
@@ -35,12 +39,15 @@ import javax.tools.Diagnostic.Kind;
 
 import org.spongepowered.asm.mixim.injection.selectors.ITargetSelectorRemappable;
 import org.spongepowered.asm.mixim.injection.struct.MemberInfo;
+import org.spongepowered.asm.mixim.refmap.BinaryReferenceMap;
 import org.spongepowered.asm.mixim.refmap.ReferenceMapper;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
 import org.spongepowered.tools.obfuscation.interfaces.IMiximAnnotationProcessor;
 import org.spongepowered.tools.obfuscation.interfaces.IReferenceManager;
 
+import com.google.common.base.Charsets;
+
 /**
  * Implementation of the reference manager
  */
@@ -125,11 +132,14 @@ public class ReferenceManager implements IReferenceManager {
             return;
         }
         
+        StringBuilder json = new StringBuilder();
+        this.refMapper.write(json);
+        
         PrintWriter writer = null;
         
         try {
             writer = this.newWriter(this.outRefMapFileName, "refmap");
-            this.refMapper.write(writer);
+            writer.append(json);
         } catch (IOException ex) {
             ex.printStackTrace();
         } finally {
@@ -141,22 +151,47 @@ public class ReferenceManager implements IReferenceManager {
                 }
             }
         }
+        
+        OutputStream out = null;
+        
+        try {
+            out = this.newOutputStream(BinaryReferenceMap.getResourceName(this.outRefMapFileName), "binary refmap");
+            this.refMapper.writeBinary(json, out);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (Exception ex) {
+                    // oh well
+                }
+            }
+        }
     }
     
     /**
-     * Open a writer for an output file
+     * Open a writer for an output file, the file is always written as UTF-8
+     * since the binary refmap is validated against the encoded JSON
      */
     private PrintWriter newWriter(String fileName, String description) throws IOException {
+        return new PrintWriter(new OutputStreamWriter(this.newOutputStream(fileName, description), Charsets.UTF_8));
+    }
+
+    /**
+     * Open a stream for a binary output file
+     */
+    private OutputStream newOutputStream(String fileName, String description) throws IOException {
         if (fileName.matches("^.*[\\\\/:].*$")) {
             File outFile = new File(fileName);
             outFile.getParentFile().mkdirs();
             this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + outFile.getAbsolutePath());
-            return new PrintWriter(outFile);
+            return new BufferedOutputStream(new FileOutputStream(outFile));
         }
         
         FileObject outResource = this.ap.getProcessingEnvironment().getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", fileName);
         this.ap.printMessage(Kind.NOTE, "Writing " + description + " to " + new File(outResource.toUri()).getAbsolutePath());
-        return new PrintWriter(outResource.openWriter());
+        return new BufferedOutputStream(outResource.openOutputStream());
     }
 
     /* (non-Javadoc)
@@ -47,6 +47,8 @@ public final class SupportedOptions {
     public static final String DEPENDENCY_TARGETS_FILE   = "dependencyTargetsFile";
     public static final String MAPPING_TYPES             = "mappingTypes";
     public static final String PLUGIN_VERSION            = "pluginVersion";
+    public static final String DISABLE_INCREMENTAL       = "disableIncremental";
+    public static final String MAPPING_CACHE_DIR         = "mappingCacheDir";
     
     private SupportedOptions() {}
 
@@ -65,7 +67,9 @@ public final class SupportedOptions {
             SupportedOptions.DEFAULT_OBFUSCATION_ENV,
             SupportedOptions.DEPENDENCY_TARGETS_FILE,
             SupportedOptions.MAPPING_TYPES,
-            SupportedOptions.PLUGIN_VERSION
+            SupportedOptions.PLUGIN_VERSION,
+            SupportedOptions.DISABLE_INCREMENTAL,
+            SupportedOptions.MAPPING_CACHE_DIR
         );
         options.addAll(
             ObfuscationServices.getInstance().getSupportedOptions()
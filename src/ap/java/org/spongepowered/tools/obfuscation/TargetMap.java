@@ -24,18 +24,21 @@
  */
 package org.spongepowered.tools.obfuscation;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.lang.model.element.TypeElement;
@@ -46,17 +49,37 @@ import org.spongepowered.tools.obfuscation.mirror.TypeReference;
 import com.google.common.io.Files;
 
 /**
- * Serialisable map of classes to their associated mixims, used so that we can
- * pass target information for supermixims from one compiler session to another
+ * Map of classes to their associated mixims, used so that we can pass target
+ * information for supermixims from one compiler session to another
  */
 public final class TargetMap extends HashMap<TypeReference, Set<TypeReference>> {
 
     private static final long serialVersionUID = 1L;
     
+    /**
+     * Session file header
+     */
+    private static final int MAGIC = 0x4D585444;
+    
+    /**
+     * Session file format version
+     */
+    private static final int VERSION = 1;
+    
     /**
      * Session ID, used to identify the temp file
      */
     private final String sessionId;
+    
+    /**
+     * True if the map has changed since it was read or last written
+     */
+    private transient boolean modified = true;
+    
+    /**
+     * True once the session file has been marked for deletion on exit
+     */
+    private transient boolean deleteOnExit;
 
     /**
      * Create a new TargetMap with a session ID based on the current system time
@@ -130,7 +153,7 @@ public final class TargetMap extends HashMap<TypeReference, Set<TypeReference>>
      */
     public void addMixim(TypeReference target, TypeReference mixim) {
         Set<TypeReference> mixims = this.getMiximsFor(target);
-        mixims.add(mixim);
+        this.modified |= mixims.add(mixim);
     }
 
     /**
@@ -198,27 +221,50 @@ public final class TargetMap extends HashMap<TypeReference, Set<TypeReference>>
     }
 
     /**
-     * Write this target map to temporary session file
+     * Write this target map to temporary session file. The map is written in
+     * a compact binary form and the session file is replaced atomically, the
+     * file is only rewritten if the map has changed since it was last written
      * 
      * @param temp Set "delete on exit" for the file
      */
     public void write(boolean temp) {
-        ObjectOutputStream oos = null;
-        FileOutputStream fout = null;
+        if (!this.modified) {
+            return;
+        }
+        
+        File sessionFile = TargetMap.getSessionFile(this.sessionId);
+        if (temp && !this.deleteOnExit) {
+            sessionFile.deleteOnExit();
+            this.deleteOnExit = true;
+        }
+        
+        File tempFile = new File(sessionFile.getPath() + ".new");
+        DataOutputStream out = null;
         try {
-            File sessionFile = TargetMap.getSessionFile(this.sessionId);
-            if (temp) {
-                sessionFile.deleteOnExit();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(TargetMap.MAGIC);
+            out.writeInt(TargetMap.VERSION);
+            out.writeInt(this.size());
+            for (Entry<TypeReference, Set<TypeReference>> target : this.entrySet()) {
+                out.writeUTF(target.getKey().getName());
+                out.writeInt(target.getValue().size());
+                for (TypeReference mixim : target.getValue()) {
+                    out.writeUTF(mixim.getName());
+                }
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(sessionFile)) {
+                sessionFile.delete();
+                tempFile.renameTo(sessionFile);
             }
-            fout = new FileOutputStream(sessionFile, true);
-            oos = new ObjectOutputStream(fout);
-            oos.writeObject(this);
+            this.modified = false;
         } catch (Exception ex) {
             ex.printStackTrace();
         } finally {
-            if (oos != null) {
+            if (out != null) {
                 try {
-                    oos.close();
+                    out.close();
                 } catch (IOException ex) {
                     ex.printStackTrace();
                 }
@@ -227,24 +273,34 @@ public final class TargetMap extends HashMap<TypeReference, Set<TypeReference>>
     }
     
     /**
-     * Attemp to deserialise a TargetMap from the specified file
+     * Attempt to read a TargetMap from the specified file
      * 
+     * @param sessionId session id of the map being read
      * @param sessionFile File to read
-     * @return deserialised map or null if deserialisation failed
+     * @return map or null if the file could not be read
      */
-    private static TargetMap read(File sessionFile) {
-        ObjectInputStream objectinputstream = null;
-        FileInputStream streamIn = null;
+    private static TargetMap read(String sessionId, File sessionFile) {
+        DataInputStream in = null;
         try {
-            streamIn = new FileInputStream(sessionFile);
-            objectinputstream = new ObjectInputStream(streamIn);
-            return (TargetMap)objectinputstream.readObject();
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(sessionFile)));
+            if (in.readInt() != TargetMap.MAGIC || in.readInt() != TargetMap.VERSION) {
+                return null;
+            }
+            TargetMap map = new TargetMap(sessionId);
+            for (int targetCount = in.readInt(); targetCount > 0; targetCount--) {
+                TypeReference target = new TypeReference(in.readUTF());
+                for (int miximCount = in.readInt(); miximCount > 0; miximCount--) {
+                    map.addMixim(target, new TypeReference(in.readUTF()));
+                }
+            }
+            map.modified = false;
+            return map;
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (objectinputstream != null) {
+            if (in != null) {
                 try {
-                    objectinputstream .close();
+                    in.close();
                 } catch (IOException ex) {
                     ex.printStackTrace();
                 }
@@ -266,7 +322,7 @@ public final class TargetMap extends HashMap<TypeReference, Set<TypeReference>>
         if (sessionId != null) {
             File sessionFile = TargetMap.getSessionFile(sessionId);
             if (sessionFile.exists()) {
-                TargetMap map = TargetMap.read(sessionFile);
+                TargetMap map = TargetMap.read(sessionId, sessionFile);
                 if (map != null) {
                     return map;
                 }
@@ -152,4 +152,10 @@ public interface IObfuscationDataProvider {
      */
     public abstract ObfuscationData<String> getObfClass(String className);
 
+    /**
+     * Discard memoised lookups, called at the start of each processing round
+     * since types resolved in previous rounds may have changed
+     */
+    public abstract void clearCache();
+
 }
@@ -24,6 +24,10 @@
  */
 package org.spongepowered.tools.obfuscation.mapping.common;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.Messager;
 
@@ -35,7 +39,11 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 
 /**
- * Base class for mapping providers
+ * Base class for mapping providers. Mappings can either be stored directly in
+ * the provided maps or, for providers which read whole files, in
+ * {@link MappingTable}s which are cached between compilations. Lookups check
+ * the maps first and then the tables, most recently read first, so that later
+ * inputs take precedence as they do when writing to the maps.
  */
 public abstract class MappingProvider implements IMappingProvider {
     
@@ -46,43 +54,88 @@ public abstract class MappingProvider implements IMappingProvider {
     protected final BiMap<String, String> classMap = HashBiMap.create();
     protected final BiMap<MappingField, MappingField> fieldMap = HashBiMap.create();
     protected final BiMap<MappingMethod, MappingMethod> methodMap = HashBiMap.create();
+    
+    protected final List<MappingTable> tables = new ArrayList<MappingTable>();
+    
+    /**
+     * Directory to cache compiled mapping tables in, null to disable caching
+     */
+    protected File cacheDir = MappingProvider.getDefaultCacheDir();
 
     public MappingProvider(Messager messager, Filer filer) {
         this.messager = messager;
         this.filer = filer;
     }
 
+    /**
+     * Set the directory to cache compiled mapping tables in
+     * 
+     * @param cacheDir cache directory, or null to disable caching
+     */
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
     @Override
     public void clear() {
         this.packageMap.clear();
         this.classMap.clear();
         this.fieldMap.clear();
         this.methodMap.clear();
+        this.tables.clear();
     }
 
     @Override
     public boolean isEmpty() {
+        for (MappingTable table : this.tables) {
+            if (!table.isEmpty()) {
+                return false;
+            }
+        }
         return this.packageMap.isEmpty() && this.classMap.isEmpty() && this.fieldMap.isEmpty() && this.methodMap.isEmpty();
     }
 
     @Override
     public MappingMethod getMethodMapping(MappingMethod method) {
-        return this.methodMap.get(method);
+        MappingMethod mapped = this.methodMap.get(method);
+        for (int i = this.tables.size() - 1; mapped == null && i >= 0; i--) {
+            mapped = this.tables.get(i).getMethodMapping(method);
+        }
+        return mapped;
     }
 
     @Override
     public MappingField getFieldMapping(MappingField field) {
-        return this.fieldMap.get(field);
+        MappingField mapped = this.fieldMap.get(field);
+        for (int i = this.tables.size() - 1; mapped == null && i >= 0; i--) {
+            mapped = this.tables.get(i).getFieldMapping(field);
+        }
+        return mapped;
     }
 
     @Override
     public String getClassMapping(String className) {
-        return this.classMap.get(className);
+        String mapped = this.classMap.get(className);
+        for (int i = this.tables.size() - 1; mapped == null && i >= 0; i--) {
+            mapped = this.tables.get(i).getClassMapping(className);
+        }
+        return mapped;
     }
 
     @Override
     public String getPackageMapping(String packageName) {
-        return this.packageMap.get(packageName);
+        String mapped = this.packageMap.get(packageName);
+        for (int i = this.tables.size() - 1; mapped == null && i >= 0; i--) {
+            mapped = this.tables.get(i).getPackageMapping(packageName);
+        }
+        return mapped;
+    }
+    
+    /**
+     * Get the default directory for cached mapping tables
+     */
+    public static File getDefaultCacheDir() {
+        return new File(System.getProperty("java.io.tmpdir"), "mixim-mappings");
     }
 
 }
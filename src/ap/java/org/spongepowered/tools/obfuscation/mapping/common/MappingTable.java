@@ -0,0 +1,506 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.tools.obfuscation.mapping.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
+import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.BiMap;
+import com.google.common.collect.HashBiMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Compact, read-only store for the mappings read from a single input file.
+ * Strings are pooled and sorted so that each distinct string is identified by
+ * its index in the pool, and mappings are stored as columns of string ids
+ * sorted by their key columns. Lookups resolve the query strings to ids by
+ * binary search over the pool and then binary search the key columns, so no
+ * per-mapping objects exist until a mapping is actually requested.
+ * 
+ * <p>Tables are compiled from the parsed mappings the first time an input
+ * file is seen and written to the cache directory under the hash of the file
+ * contents. Later compilations which use the same input memory-map the cached
+ * table instead of parsing the input again.</p>
+ */
+public final class MappingTable {
+    
+    /**
+     * Parses an input file into mapping maps, implemented by mapping providers
+     * to supply their format-specific parser
+     */
+    public interface Parser {
+        
+        /**
+         * Parse the supplied input into the supplied maps
+         * 
+         * @param input file to parse
+         * @param packageMap package mappings
+         * @param classMap class mappings
+         * @param fieldMap field mappings
+         * @param methodMap method mappings
+         * @return true if the parsed mappings depend only on the input file and
+         *      can be cached, false if they should not be cached
+         * @throws IOException if the input cannot be read
+         */
+        public abstract boolean parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+                BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException;
+        
+    }
+    
+    /**
+     * File magic, "MXMT"
+     */
+    private static final int MAGIC = 0x4D584D54;
+    
+    /**
+     * Format version
+     */
+    private static final int VERSION = 1;
+    
+    /**
+     * Header size: magic, version, string count and row counts for packages,
+     * classes, fields and methods
+     */
+    private static final int HEADER_SIZE = 28;
+    
+    /**
+     * Id used for null strings
+     */
+    private static final int NULL = -1;
+    
+    /**
+     * Column counts for each section. Packages and classes store from and to
+     * names, members store owner, name and descriptor for both sides.
+     */
+    private static final int NAME_COLUMNS = 2, MEMBER_COLUMNS = 6, MEMBER_KEY_COLUMNS = 3;
+    
+    private final ByteBuffer buffer;
+    
+    private final int stringCount, packageCount, classCount, fieldCount, methodCount;
+    
+    private final int packagesPos, classesPos, fieldsPos, methodsPos;
+    
+    /**
+     * Decoded strings, populated on demand. Every lookup returns the same
+     * instance for a given id.
+     */
+    private final String[] strings;
+    
+    private MappingTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.stringCount = buffer.getInt(8);
+        this.packageCount = buffer.getInt(12);
+        this.classCount = buffer.getInt(16);
+        this.fieldCount = buffer.getInt(20);
+        this.methodCount = buffer.getInt(24);
+        this.packagesPos = MappingTable.HEADER_SIZE + this.stringCount * 4;
+        this.classesPos = this.packagesPos + this.packageCount * MappingTable.NAME_COLUMNS * 4;
+        this.fieldsPos = this.classesPos + this.classCount * MappingTable.NAME_COLUMNS * 4;
+        this.methodsPos = this.fieldsPos + this.fieldCount * MappingTable.MEMBER_COLUMNS * 4;
+        this.strings = new String[this.stringCount];
+    }
+    
+    /**
+     * Returns true if this table contains no mappings
+     */
+    public boolean isEmpty() {
+        return this.packageCount == 0 && this.classCount == 0 && this.fieldCount == 0 && this.methodCount == 0;
+    }
+    
+    /**
+     * Get the mapping for the specified package
+     * 
+     * @param packageName package name
+     * @return mapped name or <tt>null</tt> if not found
+     */
+    public String getPackageMapping(String packageName) {
+        return this.getNameMapping(this.packagesPos, this.packageCount, packageName);
+    }
+    
+    /**
+     * Get the mapping for the specified class
+     * 
+     * @param className class name
+     * @return mapped name or <tt>null</tt> if not found
+     */
+    public String getClassMapping(String className) {
+        return this.getNameMapping(this.classesPos, this.classCount, className);
+    }
+    
+    /**
+     * Get the mapping for the specified field
+     * 
+     * @param field field to look up
+     * @return mapped field or <tt>null</tt> if not found
+     */
+    public MappingField getFieldMapping(MappingField field) {
+        int row = this.findMember(this.fieldsPos, this.fieldCount, field.getOwner(), field.getSimpleName(), field.getDesc());
+        if (row < 0) {
+            return null;
+        }
+        return new MappingField(this.getMemberString(this.fieldsPos, this.fieldCount, row, 3),
+                this.getMemberString(this.fieldsPos, this.fieldCount, row, 4), this.getMemberString(this.fieldsPos, this.fieldCount, row, 5));
+    }
+    
+    /**
+     * Get the mapping for the specified method
+     * 
+     * @param method method to look up
+     * @return mapped method or <tt>null</tt> if not found
+     */
+    public MappingMethod getMethodMapping(MappingMethod method) {
+        int row = this.findMember(this.methodsPos, this.methodCount, method.getOwner(), method.getSimpleName(), method.getDesc());
+        if (row < 0) {
+            return null;
+        }
+        return new MappingMethod(this.getMemberString(this.methodsPos, this.methodCount, row, 3),
+                this.getMemberString(this.methodsPos, this.methodCount, row, 4), this.getMemberString(this.methodsPos, this.methodCount, row, 5));
+    }
+    
+    private String getNameMapping(int pos, int count, String name) {
+        int id = this.getId(name);
+        if (id == MappingTable.NULL) {
+            return null;
+        }
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int from = this.buffer.getInt(pos + mid * 4);
+            if (from < id) {
+                low = mid + 1;
+            } else if (from > id) {
+                high = mid - 1;
+            } else {
+                return this.getString(this.buffer.getInt(pos + (count + mid) * 4));
+            }
+        }
+        return null;
+    }
+    
+    private int findMember(int pos, int count, String owner, String name, String desc) {
+        int ownerId = this.getId(owner), nameId = this.getId(name), descId = this.getId(desc);
+        if ((owner != null && ownerId == MappingTable.NULL) || nameId == MappingTable.NULL || (desc != null && descId == MappingTable.NULL)) {
+            return -1;
+        }
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = MappingTable.compare(this.buffer.getInt(pos + mid * 4), ownerId);
+            if (cmp == 0) {
+                cmp = MappingTable.compare(this.buffer.getInt(pos + (count + mid) * 4), nameId);
+            }
+            if (cmp == 0) {
+                cmp = MappingTable.compare(this.buffer.getInt(pos + (count * 2 + mid) * 4), descId);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    private String getMemberString(int pos, int count, int row, int column) {
+        return this.getString(this.buffer.getInt(pos + (count * column + row) * 4));
+    }
+    
+    /**
+     * Get the id of the specified string, returns {@link #NULL} if the string
+     * is null or is not in the pool
+     */
+    private int getId(String value) {
+        if (value == null) {
+            return MappingTable.NULL;
+        }
+        int low = 0, high = this.stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.getString(mid).compareTo(value);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return MappingTable.NULL;
+    }
+    
+    private String getString(int id) {
+        if (id == MappingTable.NULL) {
+            return null;
+        }
+        String value = this.strings[id];
+        if (value == null) {
+            int pos = this.buffer.getInt(MappingTable.HEADER_SIZE + id * 4);
+            int length = this.buffer.getShort(pos) & 0xFFFF;
+            byte[] bytes = new byte[length];
+            ByteBuffer data = this.buffer.duplicate();
+            data.position(pos + 2);
+            data.get(bytes);
+            value = new String(bytes, Charsets.UTF_8);
+            this.strings[id] = value;
+        }
+        return value;
+    }
+    
+    /**
+     * Load the mappings for the specified input file, using the cached table
+     * for the file if one exists and compiling the table using the supplied
+     * parser otherwise
+     * 
+     * @param input input file
+     * @param format format name, used to distinguish tables compiled from the
+     *      same file by different parsers
+     * @param cacheDir directory to cache compiled tables in, can be
+     *      <tt>null</tt> to disable caching
+     * @param parser parser for the input format
+     * @return loaded table
+     * @throws IOException if the input file cannot be read
+     */
+    public static MappingTable load(File input, String format, File cacheDir, Parser parser) throws IOException {
+        File cached = null;
+        if (cacheDir != null) {
+            String hash = Files.hash(input, Hashing.sha1()).toString();
+            cached = new File(cacheDir, String.format("%s-%s.bin", hash, format));
+            MappingTable table = MappingTable.map(cached);
+            if (table != null) {
+                return table;
+            }
+        }
+        
+        BiMap<String, String> packageMap = HashBiMap.create();
+        BiMap<String, String> classMap = HashBiMap.create();
+        BiMap<MappingField, MappingField> fieldMap = HashBiMap.create();
+        BiMap<MappingMethod, MappingMethod> methodMap = HashBiMap.create();
+        boolean cacheable = parser.parse(input, packageMap, classMap, fieldMap, methodMap);
+        byte[] bytes = MappingTable.compile(packageMap, classMap, fieldMap, methodMap);
+        
+        if (cached != null && cacheable) {
+            try {
+                cacheDir.mkdirs();
+                File temp = new File(cacheDir, cached.getName() + ".tmp");
+                Files.write(bytes, temp);
+                if (!temp.renameTo(cached)) {
+                    cached.delete();
+                    temp.renameTo(cached);
+                }
+            } catch (IOException ex) {
+                // Not fatal, the table will just be compiled again next time
+            }
+        }
+        
+        return new MappingTable(ByteBuffer.wrap(bytes));
+    }
+    
+    /**
+     * Memory-map a cached table, returns null if the table does not exist or
+     * is not valid
+     */
+    private static MappingTable map(File cached) {
+        if (!cached.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(cached, "r");
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < MappingTable.HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MappingTable.MAGIC || buffer.getInt(4) != MappingTable.VERSION) {
+                return null;
+            }
+            return new MappingTable(buffer);
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encode the supplied mappings as a table
+     */
+    private static byte[] compile(Map<String, String> packageMap, Map<String, String> classMap, Map<MappingField, MappingField> fieldMap,
+            Map<MappingMethod, MappingMethod> methodMap) {
+        TreeSet<String> pool = new TreeSet<String>();
+        MappingTable.pool(pool, packageMap);
+        MappingTable.pool(pool, classMap);
+        for (Entry<MappingField, MappingField> field : fieldMap.entrySet()) {
+            MappingTable.pool(pool, field.getKey().getOwner(), field.getKey().getSimpleName(), field.getKey().getDesc());
+            MappingTable.pool(pool, field.getValue().getOwner(), field.getValue().getSimpleName(), field.getValue().getDesc());
+        }
+        for (Entry<MappingMethod, MappingMethod> method : methodMap.entrySet()) {
+            MappingTable.pool(pool, method.getKey().getOwner(), method.getKey().getSimpleName(), method.getKey().getDesc());
+            MappingTable.pool(pool, method.getValue().getOwner(), method.getValue().getSimpleName(), method.getValue().getDesc());
+        }
+        
+        List<String> strings = new ArrayList<String>(pool);
+        List<int[]> packages = MappingTable.nameRows(strings, packageMap);
+        List<int[]> classes = MappingTable.nameRows(strings, classMap);
+        List<int[]> fields = new ArrayList<int[]>(fieldMap.size());
+        for (Entry<MappingField, MappingField> field : fieldMap.entrySet()) {
+            MappingField from = field.getKey(), to = field.getValue();
+            fields.add(MappingTable.ids(strings, from.getOwner(), from.getSimpleName(), from.getDesc(), to.getOwner(), to.getSimpleName(),
+                    to.getDesc()));
+        }
+        List<int[]> methods = new ArrayList<int[]>(methodMap.size());
+        for (Entry<MappingMethod, MappingMethod> method : methodMap.entrySet()) {
+            MappingMethod from = method.getKey(), to = method.getValue();
+            methods.add(MappingTable.ids(strings, from.getOwner(), from.getSimpleName(), from.getDesc(), to.getOwner(), to.getSimpleName(),
+                    to.getDesc()));
+        }
+        MappingTable.sort(packages, 1);
+        MappingTable.sort(classes, 1);
+        MappingTable.sort(fields, MappingTable.MEMBER_KEY_COLUMNS);
+        MappingTable.sort(methods, MappingTable.MEMBER_KEY_COLUMNS);
+        
+        try {
+            ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+            DataOutputStream stringData = new DataOutputStream(stringBytes);
+            int base = MappingTable.HEADER_SIZE + strings.size() * 4 + (packages.size() + classes.size()) * MappingTable.NAME_COLUMNS * 4
+                    + (fields.size() + methods.size()) * MappingTable.MEMBER_COLUMNS * 4;
+            int[] offsets = new int[strings.size()];
+            for (int id = 0; id < offsets.length; id++) {
+                offsets[id] = base + stringData.size();
+                byte[] bytes = strings.get(id).getBytes(Charsets.UTF_8);
+                stringData.writeShort(bytes.length);
+                stringData.write(bytes);
+            }
+            stringData.flush();
+            
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(base + stringBytes.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MappingTable.MAGIC);
+            out.writeInt(MappingTable.VERSION);
+            out.writeInt(strings.size());
+            out.writeInt(packages.size());
+            out.writeInt(classes.size());
+            out.writeInt(fields.size());
+            out.writeInt(methods.size());
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            MappingTable.writeColumns(out, packages, MappingTable.NAME_COLUMNS);
+            MappingTable.writeColumns(out, classes, MappingTable.NAME_COLUMNS);
+            MappingTable.writeColumns(out, fields, MappingTable.MEMBER_COLUMNS);
+            MappingTable.writeColumns(out, methods, MappingTable.MEMBER_COLUMNS);
+            stringBytes.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            // Can't happen, we're writing to memory
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static void pool(TreeSet<String> pool, Map<String, String> names) {
+        for (Entry<String, String> name : names.entrySet()) {
+            MappingTable.pool(pool, name.getKey(), name.getValue());
+        }
+    }
+    
+    private static void pool(TreeSet<String> pool, String... values) {
+        for (String value : values) {
+            if (value != null) {
+                pool.add(value);
+            }
+        }
+    }
+    
+    private static List<int[]> nameRows(List<String> strings, Map<String, String> names) {
+        List<int[]> rows = new ArrayList<int[]>(names.size());
+        for (Entry<String, String> name : names.entrySet()) {
+            rows.add(MappingTable.ids(strings, name.getKey(), name.getValue()));
+        }
+        return rows;
+    }
+    
+    private static int[] ids(List<String> strings, String... values) {
+        int[] ids = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ids[i] = values[i] != null ? Collections.binarySearch(strings, values[i]) : MappingTable.NULL;
+        }
+        return ids;
+    }
+    
+    private static void sort(List<int[]> rows, final int keyColumns) {
+        Collections.sort(rows, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                for (int column = 0; column < keyColumns; column++) {
+                    int cmp = MappingTable.compare(a[column], b[column]);
+                    if (cmp != 0) {
+                        return cmp;
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+    
+    private static void writeColumns(DataOutputStream out, List<int[]> rows, int columns) throws IOException {
+        for (int column = 0; column < columns; column++) {
+            for (int[] row : rows) {
+                out.writeInt(row[column]);
+            }
+        }
+    }
+    
+    private static int compare(int a, int b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+    
+}
@@ -37,6 +37,7 @@ import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
 import org.spongepowered.asm.obfuscation.mapping.mcp.MappingFieldSrg;
 import org.spongepowered.tools.obfuscation.mapping.common.MappingProvider;
+import org.spongepowered.tools.obfuscation.mapping.common.MappingTable;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.BiMap;
@@ -47,7 +48,13 @@ import com.google.common.io.Files;
  */
 public class MappingProviderTSrg extends MappingProvider {
     
-    private List<String> inputMappings = new ArrayList<String>();
+    /**
+     * Input files, the raw mappings are only read again if they are needed by
+     * the writer
+     */
+    private final List<File> inputFiles = new ArrayList<File>();
+    
+    private List<String> inputMappings;
 
     public MappingProviderTSrg(Messager messager, Filer filer) {
         super(messager, filer);
@@ -55,16 +62,30 @@ public class MappingProviderTSrg extends MappingProvider {
 
     @Override
     public void read(final File input) throws IOException {
-        // Locally scoped to avoid synthetic accessor
-        final BiMap<String, String> packageMap = this.packageMap;
-        final BiMap<String, String> classMap = this.classMap;
-        final BiMap<MappingField, MappingField> fieldMap = this.fieldMap;
-        final BiMap<MappingMethod, MappingMethod> methodMap = this.methodMap;
-        
+        this.inputFiles.add(input);
+        this.inputMappings = null;
+        this.tables.add(MappingTable.load(input, "tsrg", this.cacheDir, new MappingTable.Parser() {
+            @Override
+            public boolean parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+                    BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
+                return MappingProviderTSrg.this.parse(input, packageMap, classMap, fieldMap, methodMap);
+            }
+        }));
+    }
+    
+    /**
+     * Parse a TSRG file into the supplied maps. Method mappings are stored
+     * with the original descriptor and converted to {@link MappingMethodLazy}
+     * on lookup. Returns false if the file contains inline members whose class
+     * mapping came from a previous input, since the result then depends on
+     * more than this file.
+     */
+    boolean parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+            BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
+        boolean cacheable = true;
         String fromClass = null, toClass = null;
-        this.inputMappings.addAll(Files.readLines(input, Charset.defaultCharset()));
         
-        for (String line : this.inputMappings) {
+        for (String line : Files.readLines(input, Charset.defaultCharset())) {
             if (Strings.isNullOrEmpty(line) || line.startsWith("#")) {
                 continue;
             }
@@ -78,8 +99,7 @@ public class MappingProviderTSrg extends MappingProvider {
                 if (parts.length == 2) {
                     fieldMap.forcePut(new MappingField(fromClass, parts[0]), new MappingField(toClass, parts[1]));
                 } else if (parts.length == 3) {
-                    methodMap.forcePut(new MappingMethod(fromClass, parts[0], parts[1]), new MappingMethodLazy(toClass, parts[2],
-                            parts[1], MappingProviderTSrg.this));
+                    methodMap.forcePut(new MappingMethod(fromClass, parts[0], parts[1]), new MappingMethod(toClass, parts[2], parts[1]));
                 } else {
                     throw new IllegalStateException("Error parsing TSRG file, too many arguments: " + line);
                 }
@@ -96,14 +116,17 @@ public class MappingProviderTSrg extends MappingProvider {
                     }
                 } else if (parts.length > 2) {
                     String to = classMap.get(from);
+                    if (to == null) {
+                        to = this.getClassMapping(from);
+                        cacheable = false;
+                    }
                     if (to == null) {
                         throw new IllegalStateException("Error parsing TSRG file, found inline member before class mapping: " + line);
                     }
                     if (parts.length == 3) {
                         fieldMap.forcePut(new MappingField(from, parts[1]), new MappingField(to, parts[2]));
                     } else if (parts.length == 4) {
-                        methodMap.forcePut(new MappingMethod(from, parts[1], parts[2]), new MappingMethodLazy(to, parts[3], parts[2],
-                                MappingProviderTSrg.this));
+                        methodMap.forcePut(new MappingMethod(from, parts[1], parts[2]), new MappingMethod(to, parts[3], parts[2]));
                     } else {
                         throw new IllegalStateException("Error parsing TSRG file, too many arguments: " + line);
                     }
@@ -112,6 +135,23 @@ public class MappingProviderTSrg extends MappingProvider {
                 throw new IllegalStateException("Error parsing TSRG, unrecognised directive: " + line);
             }
         }
+        
+        return cacheable;
+    }
+    
+    @Override
+    public MappingMethod getMethodMapping(MappingMethod method) {
+        MappingMethod mapped = this.methodMap.get(method);
+        if (mapped != null) {
+            return mapped;
+        }
+        for (int i = this.tables.size() - 1; i >= 0; i--) {
+            mapped = this.tables.get(i).getMethodMapping(method);
+            if (mapped != null) {
+                return new MappingMethodLazy(mapped.getOwner(), mapped.getSimpleName(), mapped.getDesc(), this);
+            }
+        }
+        return null;
     }
     
     @Override
@@ -120,11 +160,29 @@ public class MappingProviderTSrg extends MappingProvider {
         if (field.getDesc() != null) {
             field = new MappingFieldSrg(field);
         }
-        return this.fieldMap.get(field);
+        return super.getFieldMapping(field);
     }
 
     List<String> getInputMappings() {
+        if (this.inputMappings == null) {
+            List<String> inputMappings = new ArrayList<String>();
+            for (File input : this.inputFiles) {
+                try {
+                    inputMappings.addAll(Files.readLines(input, Charset.defaultCharset()));
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            this.inputMappings = inputMappings;
+        }
         return this.inputMappings;
     }
     
+    @Override
+    public void clear() {
+        super.clear();
+        this.inputFiles.clear();
+        this.inputMappings = null;
+    }
+    
 }
@@ -36,6 +36,7 @@ import org.spongepowered.asm.obfuscation.mapping.common.MappingField;
 import org.spongepowered.asm.obfuscation.mapping.common.MappingMethod;
 import org.spongepowered.asm.obfuscation.mapping.mcp.MappingFieldSrg;
 import org.spongepowered.tools.obfuscation.mapping.common.MappingProvider;
+import org.spongepowered.tools.obfuscation.mapping.common.MappingTable;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.BiMap;
@@ -48,6 +49,18 @@ import com.google.common.io.LineProcessor;
  * github.com/MinecraftForge/Srg2Source</a>).
  */
 public class MappingProviderSrg extends MappingProvider {
+    
+    /**
+     * Parser for SRG files, stateless so shared between providers
+     */
+    private static final MappingTable.Parser PARSER = new MappingTable.Parser() {
+        @Override
+        public boolean parse(File input, BiMap<String, String> packageMap, BiMap<String, String> classMap,
+                BiMap<MappingField, MappingField> fieldMap, BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
+            MappingProviderSrg.parse(input, packageMap, classMap, fieldMap, methodMap);
+            return true;
+        }
+    };
 
     public MappingProviderSrg(Messager messager, Filer filer) {
         super(messager, filer);
@@ -55,12 +68,15 @@ public class MappingProviderSrg extends MappingProvider {
 
     @Override
     public void read(final File input) throws IOException {
-        // Locally scoped to avoid synthetic accessor
-        final BiMap<String, String> packageMap = this.packageMap;
-        final BiMap<String, String> classMap = this.classMap;
-        final BiMap<MappingField, MappingField> fieldMap = this.fieldMap;
-        final BiMap<MappingMethod, MappingMethod> methodMap = this.methodMap;
-
+        this.tables.add(MappingTable.load(input, "srg", this.cacheDir, MappingProviderSrg.PARSER));
+    }
+    
+    /**
+     * Parse an SRG file into the supplied maps, package-private to avoid a
+     * synthetic accessor
+     */
+    static void parse(final File input, final BiMap<String, String> packageMap, final BiMap<String, String> classMap,
+            final BiMap<MappingField, MappingField> fieldMap, final BiMap<MappingMethod, MappingMethod> methodMap) throws IOException {
         Files.readLines(input, Charset.defaultCharset(), new LineProcessor<String>() {
             @Override
             public String getResult() {
@@ -99,6 +115,6 @@ public class MappingProviderSrg extends MappingProvider {
         if (field.getDesc() != null) {
             field = new MappingFieldSrg(field);
         }
-        return this.fieldMap.get(field);
+        return super.getFieldMapping(field);
     }
 }
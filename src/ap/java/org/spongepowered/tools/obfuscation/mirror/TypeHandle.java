@@ -25,8 +25,11 @@
 package org.spongepowered.tools.obfuscation.mirror;
 
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
@@ -74,6 +77,29 @@ public class TypeHandle {
      * Reference to this handle, for serialisation 
      */
     private TypeReference reference;
+    
+    /**
+     * Enclosed members in declaration order, built on first member lookup
+     */
+    private List<IndexedMember> members;
+    
+    /**
+     * Enclosed members indexed by name, built along with {@link #members}
+     */
+    private Map<String, List<IndexedMember>> membersByName;
+    
+    /**
+     * Cached superclass handle, resolved on first call to
+     * {@link #getSuperclass}
+     */
+    private TypeHandle superClass;
+    
+    private boolean superClassResolved;
+    
+    /**
+     * Cached interface handles
+     */
+    private List<TypeHandle> interfaces;
 
     /**
      * Ctor for imaginary elements, require the enclosing package and the FQ
@@ -193,6 +219,14 @@ public class TypeHandle {
      * class does not have a superclass
      */
     public TypeHandle getSuperclass() {
+        if (!this.superClassResolved) {
+            this.superClass = this.resolveSuperclass();
+            this.superClassResolved = true;
+        }
+        return this.superClass;
+    }
+
+    private TypeHandle resolveSuperclass() {
         TypeElement targetElement = this.getTargetElement();
         if (targetElement == null) {
             return null;
@@ -214,12 +248,15 @@ public class TypeHandle {
             return Collections.<TypeHandle>emptyList();
         }
         
-        Builder<TypeHandle> list = ImmutableList.<TypeHandle>builder();
-        for (TypeMirror iface : this.getTargetElement().getInterfaces()) {
-            list.add(new TypeHandle((DeclaredType)iface));
+        if (this.interfaces == null) {
+            Builder<TypeHandle> list = ImmutableList.<TypeHandle>builder();
+            for (TypeMirror iface : this.getTargetElement().getInterfaces()) {
+                list.add(new TypeHandle((DeclaredType)iface));
+            }
+            this.interfaces = list.build();
         }
         
-        return list.build();
+        return this.interfaces;
     }
 
     /**
@@ -284,9 +321,9 @@ public class TypeHandle {
     public String findDescriptor(ITargetSelectorByName selector) {
         String desc = selector.getDesc();
         if (desc == null) {
-            for (ExecutableElement method : this.<ExecutableElement>getEnclosedElements(ElementKind.METHOD)) {
-                if (method.getSimpleName().toString().equals(selector.getName())) {
-                    desc = TypeUtils.getDescriptor(method);
+            for (IndexedMember member : this.getMembers(selector.getName(), true)) {
+                if (member.element.getKind() == ElementKind.METHOD) {
+                    desc = member.getDescriptor();
                     break;
                 }
             }
@@ -341,10 +378,14 @@ public class TypeHandle {
     public FieldHandle findField(String name, String type, boolean caseSensitive) {
         String rawType = TypeUtils.stripGenerics(type);
 
-        for (VariableElement field : this.<VariableElement>getEnclosedElements(ElementKind.FIELD)) {
-            if (TypeHandle.compareElement(field, name, type, caseSensitive)) {
+        for (IndexedMember member : this.getMembers(name, caseSensitive)) {
+            if (member.element.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            VariableElement field = (VariableElement)member.element;
+            if (member.matches(name, type, caseSensitive)) {
                 return new FieldHandle(this.getTargetElement(), field);
-            } else if (TypeHandle.compareElement(field, name, rawType, caseSensitive)) {
+            } else if (member.matches(name, rawType, caseSensitive)) {
                 return new FieldHandle(this.getTargetElement(), field, true);
             }                
         }
@@ -402,15 +443,53 @@ public class TypeHandle {
     }
 
     protected static MethodHandle findMethod(TypeHandle target, String name, String signature, String rawSignature, boolean matchCase) {
-        for (ExecutableElement method : TypeHandle.<ExecutableElement>getEnclosedElements(target.getTargetElement(),
-                ElementKind.CONSTRUCTOR, ElementKind.METHOD)) {
-            if (TypeHandle.compareElement(method, name, signature, matchCase) || TypeHandle.compareElement(method, name, rawSignature, matchCase)) {
-                return new MethodHandle(target, method);
+        for (IndexedMember member : target.getMembers(name, matchCase)) {
+            ElementKind kind = member.element.getKind();
+            if (kind != ElementKind.CONSTRUCTOR && kind != ElementKind.METHOD) {
+                continue;
+            }
+            if (member.matches(name, signature, matchCase) || member.matches(name, rawSignature, matchCase)) {
+                return new MethodHandle(target, (ExecutableElement)member.element);
             }
         }
         return null;
     }
     
+    /**
+     * Get enclosed members which are candidates for the specified name. For
+     * case-sensitive lookups this is just the members with the exact name, for
+     * case-insensitive lookups all members are returned. Members are returned
+     * in declaration order in both cases.
+     * 
+     * @param name member name
+     * @param matchCase true if the lookup is case-sensitive
+     * @return candidate members
+     */
+    private List<IndexedMember> getMembers(String name, boolean matchCase) {
+        if (this.members == null) {
+            List<IndexedMember> members = new ArrayList<IndexedMember>();
+            Map<String, List<IndexedMember>> membersByName = new HashMap<String, List<IndexedMember>>();
+            for (Element elem : this.getEnclosedElements()) {
+                IndexedMember member = new IndexedMember(elem);
+                members.add(member);
+                List<IndexedMember> named = membersByName.get(member.name);
+                if (named == null) {
+                    named = new ArrayList<IndexedMember>(1);
+                    membersByName.put(member.name, named);
+                }
+                named.add(member);
+            }
+            this.membersByName = membersByName;
+            this.members = members;
+        }
+        
+        if (!matchCase) {
+            return this.members;
+        }
+        List<IndexedMember> named = this.membersByName.get(name);
+        return named != null ? named : Collections.<IndexedMember>emptyList();
+    }
+    
     protected static boolean compareElement(Element elem, String name, String type, boolean matchCase) {
         try {
             String elementName = elem.getSimpleName().toString();
@@ -449,5 +528,58 @@ public class TypeHandle {
     protected static List<? extends Element> getEnclosedElements(TypeElement targetElement) {
         return targetElement != null ? targetElement.getEnclosedElements() : Collections.<Element>emptyList();
     }
+    
+    /**
+     * An enclosed member along with its name and signatures, the signatures
+     * are computed on first use and then retained so that repeated lookups
+     * against the same type only pay for them once
+     */
+    private static final class IndexedMember {
+        
+        final Element element;
+        
+        final String name;
+        
+        private String signature, rawSignature, descriptor;
+        
+        private boolean resolved, invalid;
+        
+        IndexedMember(Element element) {
+            this.element = element;
+            this.name = element.getSimpleName().toString();
+        }
+        
+        /**
+         * Equivalent to {@link TypeHandle#compareElement} for this member
+         */
+        boolean matches(String name, String type, boolean matchCase) {
+            boolean compared = matchCase ? name.equals(this.name) : name.equalsIgnoreCase(this.name);
+            if (!compared || !this.resolve()) {
+                return false;
+            }
+            return type.length() == 0 || type.equals(this.signature) || type.equals(this.rawSignature);
+        }
+        
+        String getDescriptor() {
+            if (this.descriptor == null) {
+                this.descriptor = TypeUtils.getDescriptor((ExecutableElement)this.element);
+            }
+            return this.descriptor;
+        }
+        
+        private boolean resolve() {
+            if (!this.resolved) {
+                this.resolved = true;
+                try {
+                    this.signature = TypeUtils.getJavaSignature(this.element);
+                    this.rawSignature = TypeUtils.stripGenerics(this.signature);
+                } catch (NullPointerException ex) {
+                    this.invalid = true;
+                }
+            }
+            return !this.invalid;
+        }
+        
+    }
 
 }
@@ -26,7 +26,12 @@ package org.spongepowered.asm.mixim.transformer.debug;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.Manifest;
 
 import org.apache.logging.log4j.Level;
@@ -73,27 +78,59 @@ public class RuntimeDecompiler extends IFernflowerLogger implements IDecompiler,
 
     @Override
     public void decompile(final File file) {
+        this.decompile(Collections.<File>singleton(file));
+    }
+    
+    /**
+     * Decompile a batch of class files in a single decompiler pass. If the
+     * pass fails then each file in the batch is retried individually so that
+     * one bad class does not prevent the others from being decompiled.
+     * 
+     * @param files .class files to decompile
+     */
+    protected void decompile(Collection<File> files) {
+        Set<File> batch = new LinkedHashSet<File>(files);
+        if (batch.isEmpty()) {
+            return;
+        }
+        
         try {
             Fernflower fernflower = new Fernflower(new IBytecodeProvider() {
                 
-                private byte[] byteCode;
+                private final Map<String, byte[]> byteCode = new HashMap<String, byte[]>();
                 
                 @Override
                 public byte[] getBytecode(String externalPath, String internalPath) throws IOException {
-                    if (this.byteCode == null) {
-                        this.byteCode = InterpreterUtil.getBytes(new File(externalPath));
+                    byte[] bytes = this.byteCode.get(externalPath);
+                    if (bytes == null) {
+                        bytes = InterpreterUtil.getBytes(new File(externalPath));
+                        this.byteCode.put(externalPath, bytes);
                     }
-                    return this.byteCode;
+                    return bytes;
                 }
                 
             }, this, this.options, this);
             
-            fernflower.getStructContext().addSpace(file, true);
+            for (File file : batch) {
+                fernflower.getStructContext().addSpace(file, true);
+            }
             fernflower.decompileContext();
         } catch (Throwable ex) {
-            this.logger.warn("Decompilation error while processing {}", file.getName());
+            if (batch.size() == 1) {
+                this.logger.warn("Decompilation error while processing {}", batch.iterator().next().getName());
+                return;
+            }
+            this.logger.debug("Decompilation error while processing batch of {} classes, retrying individually", batch.size());
+            for (File file : batch) {
+                this.decompile(Collections.<File>singleton(file));
+            }
         }
     }
+    
+    @Override
+    public void flush() {
+        // Decompilation is synchronous, nothing to do
+    }
 
     @Override
     public void saveFolder(String path) {
@@ -26,33 +26,73 @@ package org.spongepowered.asm.mixim.transformer.debug;
 
 import java.io.File;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Asynchronous decompiler, runs mixim export task in a separate thread to avoid
- * slowing down loading time
+ * Asynchronous decompiler, runs mixim export task in separate threads to avoid
+ * slowing down loading time. Each worker thread drains up to a batch of queued
+ * class files at a time and decompiles them in a single decompiler pass.
  */
 public class RuntimeDecompilerAsync extends RuntimeDecompiler implements Runnable, UncaughtExceptionHandler {
     
+    /**
+     * Default number of worker threads
+     */
+    private static final int DEFAULT_WORKERS = 2;
+    
+    /**
+     * Default number of class files to decompile in each pass
+     */
+    private static final int DEFAULT_BATCH_SIZE = 32;
+    
     private final BlockingQueue<File> queue = new LinkedBlockingQueue<File>();
     
-    private final Thread thread;
+    private final Thread[] threads;
+    
+    private final int batchSize;
     
-    private boolean run = true;
+    /**
+     * Class files queued or being decompiled
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    /**
+     * Total class files submitted and decompiled, for progress reporting
+     */
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    
+    private volatile boolean run = true;
 
     public RuntimeDecompilerAsync(File outputPath) {
+        this(outputPath, RuntimeDecompilerAsync.DEFAULT_WORKERS, RuntimeDecompilerAsync.DEFAULT_BATCH_SIZE);
+    }
+
+    public RuntimeDecompilerAsync(File outputPath, int workers, int batchSize) {
         super(outputPath);
-        this.thread = new Thread(this, "Decompiler thread");
-        this.thread.setDaemon(true);
-        this.thread.setPriority(Thread.MIN_PRIORITY);
-        this.thread.setUncaughtExceptionHandler(this);
-        this.thread.start();
+        this.batchSize = Math.max(1, batchSize);
+        this.threads = new Thread[Math.max(1, workers)];
+        for (int i = 0; i < this.threads.length; i++) {
+            Thread thread = new Thread(this, "Decompiler thread #" + (i + 1));
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.setUncaughtExceptionHandler(this);
+            this.threads[i] = thread;
+        }
+        for (Thread thread : this.threads) {
+            thread.start();
+        }
     }
 
     @Override
     public void decompile(File file) {
         if (this.run) {
+            this.pending.incrementAndGet();
+            this.submitted.incrementAndGet();
             this.queue.offer(file);
         } else {
             super.decompile(file);
@@ -61,14 +101,45 @@ public class RuntimeDecompilerAsync extends RuntimeDecompiler implements Runnabl
 
     @Override
     public void run() {
+        List<File> batch = new ArrayList<File>();
         while (this.run) {
             try {
-                File file = this.queue.take();
-                super.decompile(file);
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, this.batchSize - 1);
+                this.decompile(batch);
             } catch (InterruptedException ex) {
                 this.run = false;
             } catch (Exception ex) {
                 ex.printStackTrace();
+            } finally {
+                this.onBatchComplete(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Decompile anything still in the queue on the calling thread and then
+     * wait for batches already taken by the workers to complete
+     */
+    @Override
+    public void flush() {
+        int remaining = this.pending.get();
+        if (remaining == 0) {
+            return;
+        }
+        
+        this.logger.info("Waiting for {} queued classes to be decompiled", remaining);
+        this.drain();
+        
+        synchronized (this.pending) {
+            while (this.pending.get() > 0) {
+                try {
+                    this.pending.wait(1000L);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
     }
@@ -77,13 +148,33 @@ public class RuntimeDecompilerAsync extends RuntimeDecompiler implements Runnabl
     public void uncaughtException(Thread thread, Throwable ex) {
         this.logger.error("Async decompiler encountered an error and will terminate. Further decompile requests will be handled synchronously. {} {}",
                 ex.getClass().getName(), ex.getMessage());
-        this.flush();
+        this.run = false;
+        this.drain();
     }
 
-    private void flush() {
-        this.run = false;
-        for (File file; (file = this.queue.poll()) != null;) {
-            this.decompile(file);
+    private void drain() {
+        List<File> batch = new ArrayList<File>();
+        while (this.queue.drainTo(batch, this.batchSize) > 0) {
+            try {
+                this.decompile(batch);
+            } finally {
+                this.onBatchComplete(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void onBatchComplete(int size) {
+        if (size == 0) {
+            return;
+        }
+        int completed = this.completed.addAndGet(size);
+        int remaining = this.pending.addAndGet(-size);
+        this.logger.debug("Decompiled {} classes, {} of {} complete", size, completed, this.submitted.get());
+        if (remaining == 0) {
+            synchronized (this.pending) {
+                this.pending.notifyAll();
+            }
         }
     }
 }
@@ -28,6 +28,7 @@ import javax.annotation.Resource;
 
 import org.spongepowered.asm.service.ILegacyClassTransformer;
 
+import net.minecraft.launchwrapper.IClassNameTransformer;
 import net.minecraft.launchwrapper.IClassTransformer;
 
 /**
@@ -62,6 +63,13 @@ class LegacyTransformerHandle implements ILegacyClassTransformer {
         return this.transformer.getClass().getAnnotation(Resource.class) != null;
     }
 
+    /**
+     * Get whether the wrapped transformer is a name transformer
+     */
+    boolean isNameTransformer() {
+        return this.transformer instanceof IClassNameTransformer;
+    }
+
     /* (non-Javadoc)
      * @see org.spongepowered.asm.service.ILegacyClassTransformer
      *      #transformClassBytes(java.lang.String, java.lang.String, byte[])
@@ -34,8 +34,10 @@ import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.spongepowered.asm.launch.GlobalProperties;
@@ -43,6 +45,7 @@ import org.spongepowered.asm.launch.GlobalProperties.Keys;
 import org.spongepowered.asm.launch.platform.MainAttributes;
 import org.spongepowered.asm.launch.platform.container.IContainerHandle;
 import org.spongepowered.asm.launch.platform.container.ContainerHandleURI;
+import org.spongepowered.asm.launch.platform.container.ContainerClassIndex;
 import org.spongepowered.asm.launch.platform.container.ContainerHandleVirtual;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
@@ -87,6 +90,11 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
     private static final String STATE_TWEAKER = MiximServiceAbstract.MIXIN_PACKAGE + "EnvironmentStateTweaker";
     private static final String TRANSFORMER_PROXY_CLASS = MiximServiceAbstract.MIXIN_PACKAGE + "transformer.Proxy";
     
+    /**
+     * Maximum number of entries to retain in the metadata cache
+     */
+    private static final int METADATA_CACHE_SIZE = 1024;
+    
     /**
      * Known re-entrant transformers, other re-entrant transformers will
      * detected automatically 
@@ -116,6 +124,32 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
      */
     private IClassNameTransformer nameTransformer;
     
+    /**
+     * Index of class path containers, used to serve class bytes without going
+     * through the class loader
+     */
+    private final ContainerClassIndex classIndex = new ContainerClassIndex();
+    
+    /**
+     * Number of launch class loader sources which have been indexed
+     */
+    private int indexedSources = -1;
+    
+    /**
+     * Name-transformed bytes fetched for metadata lookups, keyed by
+     * transformed name. If the name transformer is first in the delegation
+     * list then a subsequent full transform resumes from these bytes instead
+     * of running the name transformer again.
+     */
+    private final Map<String, byte[]> metadataCache = new LinkedHashMap<String, byte[]>(64, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return this.size() > MiximServiceLaunchWrapper.METADATA_CACHE_SIZE;
+        }
+    };
+    
     public MiximServiceLaunchWrapper() {
         this.classLoaderUtil = new LaunchClassLoaderUtil(Launch.classLoader);
     }
@@ -227,13 +261,24 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
         // We know this is deprecated, it works for LW though, so access directly
         URL[] sources = this.getClassPath();
         if (sources != null) {
+            List<URI> uris = new ArrayList<URI>(sources.length);
             for (URL url : sources) {
                 try {
                     URI uri = url.toURI();
-                    MiximServiceAbstract.logger.debug("Scanning {} for mixim tweaker", uri);
-                    if (!"file".equals(uri.getScheme()) || !new File(uri).exists()) {
-                        continue;
+                    if ("file".equals(uri.getScheme()) && new File(uri).exists()) {
+                        uris.add(uri);
                     }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+            
+            // Read all manifests up front so that jars are scanned in parallel
+            MainAttributes.prefetch(uris);
+            
+            for (URI uri : uris) {
+                try {
+                    MiximServiceAbstract.logger.debug("Scanning {} for mixim tweaker", uri);
                     MainAttributes attributes = MainAttributes.of(uri);
                     String tweaker = attributes.get(Constants.ManifestAttributes.TWEAKER);
                     if (MiximServiceLaunchWrapper.MIXIN_TWEAKER_CLASS.equals(tweaker)) {
@@ -452,7 +497,12 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
      */
     @Deprecated
     public byte[] getClassBytes(String name, String transformedName) throws IOException {
-        byte[] classBytes = Launch.classLoader.getClassBytes(name);
+        byte[] classBytes = this.getIndexedClassBytes(name);
+        if (classBytes != null) {
+            return classBytes;
+        }
+        
+        classBytes = Launch.classLoader.getClassBytes(name);
         if (classBytes != null) {
             return classBytes;
         }
@@ -476,6 +526,38 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
         }
     }
     
+    /**
+     * Retrieve class bytes from the container index, the index is updated
+     * first if sources have been added to the launch class loader since it
+     * was last built
+     * 
+     * @param name class name
+     * @return class bytes or null if the class is not in an indexed container
+     */
+    private byte[] getIndexedClassBytes(String name) {
+        synchronized (this.classIndex) {
+            List<URL> sources = Launch.classLoader.getSources();
+            if (sources.size() != this.indexedSources) {
+                for (URL source : sources) {
+                    this.classIndex.add(source);
+                }
+                if (this.indexedSources < 0 && Launch.class.getClassLoader() instanceof URLClassLoader) {
+                    for (URL source : ((URLClassLoader)Launch.class.getClassLoader()).getURLs()) {
+                        this.classIndex.add(source);
+                    }
+                }
+                this.indexedSources = sources.size();
+            }
+        }
+        
+        try {
+            return this.classIndex.getClassBytes(name);
+        } catch (IOException ex) {
+            MiximServiceAbstract.logger.debug("Failed to read {} from container index: {}", name, ex.getMessage());
+            return null;
+        }
+    }
+    
     /**
      * Loads class bytecode from the classpath
      * 
@@ -492,13 +574,23 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
         String name = this.unmapClassName(transformedName);
         
         Profiler profiler = MiximEnvironment.getProfiler();
-        Section loadTime = profiler.begin(Profiler.ROOT, "class.load");
-        byte[] classBytes = this.getClassBytes(name, transformedName);
-        loadTime.end();
+        byte[] classBytes = null;
+        int firstTransformer = 0;
+        
+        if (runTransformers) {
+            classBytes = this.getCachedMetadataBytes(transformedName);
+            firstTransformer = classBytes != null ? 1 : 0;
+        }
+        
+        if (classBytes == null) {
+            Section loadTime = profiler.begin(Profiler.ROOT, "class.load");
+            classBytes = this.getClassBytes(name, transformedName);
+            loadTime.end();
+        }
 
         if (runTransformers) {
             Section transformTime = profiler.begin(Profiler.ROOT, "class.transform");
-            classBytes = this.applyTransformers(name, transformedName, classBytes, profiler);
+            classBytes = this.applyTransformers(name, transformedName, classBytes, profiler, firstTransformer);
             transformTime.end();
         }
 
@@ -509,6 +601,86 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
         return classBytes;
     }
 
+    /**
+     * Loads class bytecode for a metadata lookup. Only name transformers are
+     * run, since member and class names must match the names seen by the rest
+     * of the environment but the remainder of the transformer chain is not
+     * needed to read class structure. The result is cached so that a later
+     * full transform of the same class does not repeat the work.
+     * 
+     * @param className Name of the class to load
+     * @return Name-transformed class bytecode for the specified class
+     * @throws ClassNotFoundException if the specified class could not be loaded
+     * @throws IOException if an error occurs whilst reading the specified class
+     */
+    private byte[] getMetadataClassBytes(String className) throws ClassNotFoundException, IOException {
+        String transformedName = className.replace('/', '.');
+        
+        synchronized (this.metadataCache) {
+            byte[] cached = this.metadataCache.get(transformedName);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        String name = this.unmapClassName(transformedName);
+        Profiler profiler = MiximEnvironment.getProfiler();
+        Section loadTime = profiler.begin(Profiler.ROOT, "class.load");
+        byte[] classBytes = this.getClassBytes(name, transformedName);
+        loadTime.end();
+        
+        if (classBytes == null) {
+            throw new ClassNotFoundException(String.format("The specified class '%s' was not found", transformedName));
+        }
+        
+        if (!this.classLoaderUtil.isClassExcluded(name, transformedName)) {
+            for (ILegacyClassTransformer transformer : this.getDelegatedLegacyTransformers()) {
+                if (MiximServiceLaunchWrapper.isNameTransformer(transformer)) {
+                    classBytes = transformer.transformClassBytes(name, transformedName, classBytes);
+                }
+            }
+        }
+
+        synchronized (this.metadataCache) {
+            this.metadataCache.put(transformedName, classBytes);
+        }
+        return classBytes;
+    }
+    
+    /**
+     * Get cached metadata bytes which a full transform can resume from. Bytes
+     * are only usable if the name transformer is the first transformer in the
+     * delegation list, otherwise the transformers would run out of order.
+     * 
+     * @param transformedName transformed class name
+     * @return cached bytes or null
+     */
+    private byte[] getCachedMetadataBytes(String transformedName) {
+        byte[] classBytes;
+        synchronized (this.metadataCache) {
+            classBytes = this.metadataCache.remove(transformedName);
+        }
+        if (classBytes == null) {
+            return null;
+        }
+        
+        List<ILegacyClassTransformer> transformers = this.getDelegatedLegacyTransformers();
+        if (transformers.isEmpty() || !MiximServiceLaunchWrapper.isNameTransformer(transformers.get(0))) {
+            return null;
+        }
+        for (int i = 1; i < transformers.size(); i++) {
+            if (MiximServiceLaunchWrapper.isNameTransformer(transformers.get(i))) {
+                return null;
+            }
+        }
+        return classBytes;
+    }
+    
+    private static boolean isNameTransformer(ILegacyClassTransformer transformer) {
+        return transformer instanceof IClassNameTransformer
+                || (transformer instanceof LegacyTransformerHandle && ((LegacyTransformerHandle)transformer).isNameTransformer());
+    }
+
     /**
      * Since we obtain the class bytes with getClassBytes(), we need to apply
      * the transformers ourself
@@ -516,15 +688,17 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
      * @param name class name
      * @param transformedName transformed class name
      * @param basicClass input class bytes
+     * @param firstTransformer index of the first delegated transformer to run
      * @return class bytecode after processing by all registered transformers
      *      except the excluded transformers
      */
-    private byte[] applyTransformers(String name, String transformedName, byte[] basicClass, Profiler profiler) {
+    private byte[] applyTransformers(String name, String transformedName, byte[] basicClass, Profiler profiler, int firstTransformer) {
         if (this.classLoaderUtil.isClassExcluded(name, transformedName)) {
             return basicClass;
         }
 
-        for (ILegacyClassTransformer transformer : this.getDelegatedLegacyTransformers()) {
+        List<ILegacyClassTransformer> transformers = this.getDelegatedLegacyTransformers();
+        for (ILegacyClassTransformer transformer : transformers.subList(Math.min(firstTransformer, transformers.size()), transformers.size())) {
             // Clear the re-entrance semaphore
             this.lock.clear();
             
@@ -585,6 +759,9 @@ public class MiximServiceLaunchWrapper extends MiximServiceAbstract implements I
      */
     @Override
     public ClassNode getClassNode(String className, boolean runTransformers) throws ClassNotFoundException, IOException {
+        if (!runTransformers) {
+            return this.getClassNode(this.getMetadataClassBytes(className), ClassReader.EXPAND_FRAMES);
+        }
         return this.getClassNode(this.getClassBytes(className, true), ClassReader.EXPAND_FRAMES);
     }
 
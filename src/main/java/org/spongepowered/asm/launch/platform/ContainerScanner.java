@@ -0,0 +1,545 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.launch.platform;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.mixim.MiximEnvironment;
+import org.spongepowered.asm.mixim.MiximEnvironment.Option;
+
+import com.google.common.base.Strings;
+
+/**
+ * Reads the main manifest attributes of jar containers. Only the end of
+ * central directory record, the central directory and the manifest entry of
+ * each jar are read, using positional reads on a {@link FileChannel}. Results
+ * are kept in a cache keyed by path, size and modification time. Batches of
+ * jars are scanned on a small pool of worker threads.
+ * 
+ * <p>If a cache directory is configured using {@link Option#CACHE_DIR} then
+ * the cache is persisted there so that unchanged jars are not read at all on
+ * subsequent launches. The cache is written once after each batch, and jars
+ * read individually are written out at shutdown. If no cache directory is
+ * configured the cache is only kept in memory.</p>
+ */
+final class ContainerScanner {
+    
+    /**
+     * Cached attributes of a single jar
+     */
+    static final class Record {
+        
+        final long size;
+        
+        final long lastModified;
+        
+        final Map<String, String> attributes;
+        
+        Record(long size, long lastModified, Map<String, String> attributes) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.attributes = attributes;
+        }
+        
+        boolean isCurrent(File file) {
+            return this.size == file.length() && this.lastModified == file.lastModified();
+        }
+        
+        Attributes toAttributes() {
+            Attributes attributes = new Attributes();
+            for (Entry<String, String> attribute : this.attributes.entrySet()) {
+                attributes.putValue(attribute.getKey(), attribute.getValue());
+            }
+            return attributes;
+        }
+        
+    }
+
+    /**
+     * Name of the persistent cache file in the cache directory
+     */
+    private static final String CACHE_FILE = "containers.dat";
+    
+    private static final int CACHE_MAGIC = 0x4D58434E;
+    
+    private static final int CACHE_VERSION = 1;
+    
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    
+    /**
+     * Upper bound for the size of a central directory we are prepared to read,
+     * anything bigger is handed to {@link JarFile}
+     */
+    private static final int MAX_CENTRAL_DIRECTORY_SIZE = 64 * 1024 * 1024;
+    
+    /**
+     * Maximum number of worker threads
+     */
+    private static final int MAX_THREADS = 8;
+    
+    private static final Logger logger = LogManager.getLogger("mixim");
+    
+    /**
+     * Shared instance
+     */
+    private static ContainerScanner instance;
+    
+    /**
+     * Cached records keyed by absolute path
+     */
+    private final Map<String, Record> records = new HashMap<String, Record>();
+    
+    /**
+     * Cache file, null if the cache is not persisted
+     */
+    private final File cacheFile;
+    
+    /**
+     * True if the records have changed since they were loaded
+     */
+    private boolean dirty;
+    
+    private ContainerScanner(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.load();
+    }
+    
+    static synchronized ContainerScanner getInstance() {
+        if (ContainerScanner.instance == null) {
+            String cacheDir = MiximEnvironment.getDefaultEnvironment().getOptionValue(Option.CACHE_DIR);
+            if (Strings.isNullOrEmpty(cacheDir)) {
+                ContainerScanner.instance = new ContainerScanner(null);
+                return ContainerScanner.instance;
+            }
+            
+            final ContainerScanner scanner = new ContainerScanner(new File(cacheDir, ContainerScanner.CACHE_FILE));
+            
+            // Records added one jar at a time are only written out at shutdown
+            Runtime.getRuntime().addShutdownHook(new Thread("Mixim Container Cache") {
+                @Override
+                public void run() {
+                    scanner.save();
+                }
+            });
+            ContainerScanner.instance = scanner;
+        }
+        return ContainerScanner.instance;
+    }
+    
+    /**
+     * Get the main attributes of the specified jar
+     * 
+     * @param jar jar file
+     * @return main attributes, or null if the jar has no manifest or cannot
+     *      be read
+     */
+    Attributes getAttributes(File jar) {
+        Record record = this.getRecord(jar);
+        if (record == null) {
+            record = this.read(jar);
+            if (record == null) {
+                return null;
+            }
+            this.putRecord(jar, record);
+        }
+        return record.toAttributes();
+    }
+    
+    /**
+     * Get the main attributes of all of the specified jars, jars which are
+     * not already cached are read in parallel
+     * 
+     * @param jars jar files to read
+     * @return map of jar to attributes, jars which have no manifest or cannot
+     *      be read are absent from the map
+     */
+    Map<File, Attributes> getAttributes(Collection<File> jars) {
+        Map<File, Attributes> result = new LinkedHashMap<File, Attributes>();
+        List<File> pending = new ArrayList<File>();
+        for (File jar : jars) {
+            Record record = this.getRecord(jar);
+            if (record != null) {
+                result.put(jar, record.toAttributes());
+            } else if (jar.isFile()) {
+                pending.add(jar);
+            }
+        }
+        
+        if (pending.isEmpty()) {
+            return result;
+        }
+        
+        ContainerScanner.logger.debug("Scanning {} containers for manifest attributes ({} cached)", pending.size(), result.size());
+        for (Entry<File, Record> scanned : this.readAll(pending).entrySet()) {
+            this.putRecord(scanned.getKey(), scanned.getValue());
+            result.put(scanned.getKey(), scanned.getValue().toAttributes());
+        }
+        this.save();
+        return result;
+    }
+    
+    private Map<File, Record> readAll(List<File> jars) {
+        Map<File, Record> records = new LinkedHashMap<File, Record>();
+        int threads = Math.min(ContainerScanner.MAX_THREADS, Math.min(jars.size(), Runtime.getRuntime().availableProcessors()));
+        if (threads <= 1) {
+            for (File jar : jars) {
+                Record record = this.read(jar);
+                if (record != null) {
+                    records.put(jar, record);
+                }
+            }
+            return records;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Mixim Container Scanner");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        
+        try {
+            List<Future<Record>> futures = new ArrayList<Future<Record>>(jars.size());
+            for (final File jar : jars) {
+                futures.add(executor.submit(new Callable<Record>() {
+                    @Override
+                    public Record call() throws Exception {
+                        return ContainerScanner.this.read(jar);
+                    }
+                }));
+            }
+            for (int index = 0; index < jars.size(); index++) {
+                try {
+                    Record record = futures.get(index).get();
+                    if (record != null) {
+                        records.put(jars.get(index), record);
+                    }
+                } catch (Exception ex) {
+                    ContainerScanner.logger.debug("Failed scanning container {}: {}", jars.get(index), ex.getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return records;
+    }
+    
+    private synchronized Record getRecord(File jar) {
+        Record record = this.records.get(jar.getAbsolutePath());
+        return record != null && record.isCurrent(jar) ? record : null;
+    }
+    
+    private synchronized void putRecord(File jar, Record record) {
+        this.records.put(jar.getAbsolutePath(), record);
+        this.dirty = true;
+    }
+    
+    /**
+     * Read the main attributes of the specified jar, returns null if the jar
+     * has no manifest or cannot be read
+     */
+    Record read(File jar) {
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        Manifest manifest = null;
+        try {
+            byte[] bytes = ContainerScanner.readManifestBytes(jar);
+            if (bytes != null) {
+                manifest = new Manifest(new ByteArrayInputStream(bytes));
+            }
+        } catch (IOException ex) {
+            manifest = ContainerScanner.readManifestFallback(jar);
+        }
+        
+        Map<String, String> attributes = new LinkedHashMap<String, String>();
+        if (manifest != null) {
+            for (Entry<Object, Object> attribute : manifest.getMainAttributes().entrySet()) {
+                attributes.put(attribute.getKey().toString(), String.valueOf(attribute.getValue()));
+            }
+        }
+        return new Record(size, lastModified, attributes);
+    }
+    
+    /**
+     * Read the raw manifest entry from the jar, returns null if the jar has no
+     * manifest
+     * 
+     * @throws IOException if the jar cannot be read with the simple reader,
+     *      for example zip64 archives
+     */
+    private static byte[] readManifestBytes(File jar) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(jar, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long fileSize = channel.size();
+            if (fileSize < ContainerScanner.END_HEADER_SIZE) {
+                throw new IOException("Not a zip file");
+            }
+            
+            // Find the end of central directory record
+            int tailSize = (int)Math.min(fileSize, ContainerScanner.END_HEADER_SIZE + ContainerScanner.MAX_COMMENT_SIZE);
+            ByteBuffer tail = ContainerScanner.read(channel, fileSize - tailSize, tailSize);
+            int end = -1;
+            for (int pos = tailSize - ContainerScanner.END_HEADER_SIZE; pos >= 0; pos--) {
+                if (tail.getInt(pos) == ContainerScanner.END_HEADER) {
+                    end = pos;
+                    break;
+                }
+            }
+            if (end < 0) {
+                throw new IOException("End of central directory not found");
+            }
+            int entries = tail.getShort(end + 10) & 0xFFFF;
+            long cdSize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+            long cdOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+            if (entries == 0xFFFF || cdOffset == 0xFFFFFFFFL || cdSize > ContainerScanner.MAX_CENTRAL_DIRECTORY_SIZE
+                    || cdOffset + cdSize > fileSize) {
+                throw new IOException("Unsupported central directory");
+            }
+            
+            // Find the manifest in the central directory
+            ByteBuffer cd = ContainerScanner.read(channel, cdOffset, (int)cdSize);
+            byte[] manifestName = JarFile.MANIFEST_NAME.getBytes("US-ASCII");
+            for (int pos = 0; pos + 46 <= cd.limit() && cd.getInt(pos) == ContainerScanner.CENTRAL_HEADER;) {
+                int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+                int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+                int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+                if (ContainerScanner.nameEquals(cd, pos + 46, nameLength, manifestName)) {
+                    int method = cd.getShort(pos + 10) & 0xFFFF;
+                    int compressedSize = cd.getInt(pos + 20);
+                    int size = cd.getInt(pos + 24);
+                    long offset = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+                    return ContainerScanner.readEntry(channel, offset, method, compressedSize, size);
+                }
+                pos += 46 + nameLength + extraLength + commentLength;
+            }
+            return null;
+        } finally {
+            raf.close();
+        }
+    }
+    
+    private static boolean nameEquals(ByteBuffer buffer, int pos, int length, byte[] name) {
+        if (length != name.length) {
+            return false;
+        }
+        for (int index = 0; index < length; index++) {
+            byte ch = buffer.get(pos + index);
+            // Manifest name is matched case-insensitively, as JarFile does
+            if (ch != name[index] && Character.toUpperCase((char)ch) != name[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] readEntry(FileChannel channel, long offset, int method, int compressedSize, int size) throws IOException {
+        ByteBuffer header = ContainerScanner.read(channel, offset, 30);
+        if (header.getInt(0) != ContainerScanner.LOCAL_HEADER || compressedSize < 0 || size < 0) {
+            throw new IOException("Invalid local header");
+        }
+        long dataStart = offset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        ByteBuffer data = ContainerScanner.read(channel, dataStart, compressedSize);
+        byte[] compressed = new byte[compressedSize];
+        data.get(compressed);
+        
+        if (method == ZipEntry.STORED) {
+            return compressed;
+        } else if (method != ZipEntry.DEFLATED) {
+            throw new IOException("Unsupported compression method " + method);
+        }
+        
+        Inflater inflater = new Inflater(true);
+        try {
+            // Inflater in nowrap mode may need an extra dummy byte of input
+            byte[] input = new byte[compressedSize + 1];
+            System.arraycopy(compressed, 0, input, 0, compressedSize);
+            inflater.setInput(input);
+            byte[] bytes = new byte[size];
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int count = inflater.inflate(bytes, read, size - read);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += count;
+            }
+            if (read != size) {
+                throw new IOException("Size mismatch inflating manifest");
+            }
+            return bytes;
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupt manifest entry: " + ex.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static Manifest readManifestFallback(File jar) {
+        JarFile jarFile = null;
+        try {
+            jarFile = new JarFile(jar);
+            return jarFile.getManifest();
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            try {
+                if (jarFile != null) {
+                    jarFile.close();
+                }
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+    
+    private synchronized void load() {
+        if (this.cacheFile == null || !this.cacheFile.isFile()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.cacheFile)));
+            if (in.readInt() != ContainerScanner.CACHE_MAGIC || in.readInt() != ContainerScanner.CACHE_VERSION) {
+                return;
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                Map<String, String> attributes = new LinkedHashMap<String, String>();
+                for (int attributeCount = in.readInt(); attributeCount > 0; attributeCount--) {
+                    attributes.put(in.readUTF(), in.readUTF());
+                }
+                this.records.put(path, new Record(size, lastModified, attributes));
+            }
+        } catch (IOException ex) {
+            ContainerScanner.logger.debug("Discarding container cache {}: {}", this.cacheFile, ex.getMessage());
+            this.records.clear();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+    
+    private synchronized void save() {
+        if (this.cacheFile == null || !this.dirty) {
+            return;
+        }
+        this.dirty = false;
+        
+        File temp = new File(this.cacheFile.getParentFile(), this.cacheFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            this.cacheFile.getParentFile().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(ContainerScanner.CACHE_MAGIC);
+            out.writeInt(ContainerScanner.CACHE_VERSION);
+            out.writeInt(this.records.size());
+            for (Entry<String, Record> entry : this.records.entrySet()) {
+                Record record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.size);
+                out.writeLong(record.lastModified);
+                out.writeInt(record.attributes.size());
+                for (Entry<String, String> attribute : record.attributes.entrySet()) {
+                    out.writeUTF(attribute.getKey());
+                    out.writeUTF(attribute.getValue());
+                }
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(this.cacheFile)) {
+                this.cacheFile.delete();
+                temp.renameTo(this.cacheFile);
+            }
+        } catch (IOException ex) {
+            ContainerScanner.logger.debug("Could not write container cache {}: {}", this.cacheFile, ex.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+}
@@ -28,8 +28,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -57,6 +61,10 @@ public final class MainAttributes {
     private MainAttributes(File jar) {
         this.attributes = MainAttributes.getAttributes(jar);
     }
+    
+    private MainAttributes(Attributes attributes) {
+        this.attributes = attributes;
+    }
 
     /**
      * Retrieve the value of attribute with the specified name, or null if not
@@ -95,25 +103,7 @@ public final class MainAttributes {
     }
 
     private static Attributes getJarAttributes(File jar) {
-        JarFile jarFile = null;
-        try {
-            jarFile = new JarFile(jar);
-            Manifest manifest = jarFile.getManifest();
-            if (manifest != null) {
-                return manifest.getMainAttributes();
-            }
-        } catch (IOException ex) {
-            // be quiet checkstyle
-        } finally {
-            try {
-                if (jarFile != null) {
-                    jarFile.close();
-                }
-            } catch (IOException e) {
-                // ignore
-            }
-        }
-        return null;
+        return ContainerScanner.getInstance().getAttributes(jar);
     }
     
     private static Attributes getDirAttributes(File dir) {
@@ -166,4 +156,34 @@ public final class MainAttributes {
         }
         return attributes;
     }
+
+    /**
+     * Read the attributes of all of the supplied containers ahead of time.
+     * Jar files which are not already cached are scanned in parallel, which is
+     * considerably cheaper than opening each jar in turn when containers are
+     * later created for them.
+     * 
+     * @param uris container locations
+     */
+    public static void prefetch(Collection<URI> uris) {
+        Map<File, URI> jars = new HashMap<File, URI>();
+        for (URI uri : uris) {
+            if (uri == null || !"file".equals(uri.getScheme()) || MainAttributes.instances.containsKey(uri)) {
+                continue;
+            }
+            File file = new File(uri);
+            if (file.isFile()) {
+                jars.put(file, uri);
+            }
+        }
+        
+        if (jars.size() < 2) {
+            return;
+        }
+        
+        List<File> files = new ArrayList<File>(jars.keySet());
+        for (Entry<File, Attributes> entry : ContainerScanner.getInstance().getAttributes(files).entrySet()) {
+            MainAttributes.instances.put(jars.get(entry.getKey()), new MainAttributes(entry.getValue()));
+        }
+    }
 }
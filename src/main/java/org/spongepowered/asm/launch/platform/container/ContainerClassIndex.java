@@ -0,0 +1,575 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.launch.platform.container;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Index of class and resource entries across a set of containers. Each jar is
+ * opened once when it is added and its central directory is read into a
+ * shared name-to-entry index, so lookups never need to search the container
+ * list or open a stream. Entry data is read directly from a read-only memory
+ * mapping of the jar, falling back to a single open {@link ZipFile} for jars
+ * which cannot be mapped (for example zip64 archives).
+ * 
+ * <p>Recently read entries are kept in a cache which is bounded by the total
+ * size of the cached bytes. Callers always receive a copy of the cached data
+ * and are free to modify it.</p>
+ * 
+ * <p>Where the same entry exists in more than one container, the container
+ * which was added first takes precedence, matching class loader search
+ * order.</p>
+ */
+public class ContainerClassIndex {
+    
+    /**
+     * Default maximum number of bytes retained by the entry cache
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16 * 1024 * 1024;
+    
+    /**
+     * A container which entries can be read from
+     */
+    abstract static class Source {
+        
+        protected final File file;
+        
+        Source(File file) {
+            this.file = file;
+        }
+        
+        /**
+         * Add the names of all entries in this source to the index
+         */
+        abstract void index(Map<String, Entry> index);
+        
+        /**
+         * Read the specified entry
+         */
+        abstract byte[] read(Entry entry) throws IOException;
+        
+        @Override
+        public String toString() {
+            return this.file.toString();
+        }
+        
+    }
+    
+    /**
+     * An indexed entry in a source
+     */
+    static final class Entry {
+        
+        final Source source;
+        
+        final String name;
+        
+        /**
+         * Offset of the local file header, only used by mapped sources
+         */
+        final int offset;
+        
+        final int method;
+        
+        final int compressedSize;
+        
+        final int size;
+        
+        Entry(Source source, String name, int offset, int method, int compressedSize, int size) {
+            this.source = source;
+            this.name = name;
+            this.offset = offset;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+        }
+        
+    }
+    
+    /**
+     * Jar which is memory-mapped in its entirety. Entry data is located via
+     * the central directory, stored entries are copied straight from the
+     * mapping and deflated entries are inflated from it.
+     */
+    static final class MappedJar extends Source {
+        
+        private static final int LOCAL_HEADER = 0x04034b50;
+        private static final int CENTRAL_HEADER = 0x02014b50;
+        private static final int END_HEADER = 0x06054b50;
+        private static final int END_HEADER_SIZE = 22;
+        private static final int MAX_COMMENT_SIZE = 0xFFFF;
+        
+        private static final int FLAG_ENCRYPTED = 0x01;
+        private static final int FLAG_UTF8 = 0x800;
+
+        private final ByteBuffer buffer;
+        
+        private MappedJar(File file, ByteBuffer buffer) {
+            super(file);
+            this.buffer = buffer;
+        }
+        
+        /**
+         * Map the specified jar, returns null if the jar cannot be handled by
+         * the mapped reader
+         */
+        static MappedJar open(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long size = channel.size();
+                if (size < MappedJar.END_HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    return null;
+                }
+                ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+                MappedJar jar = new MappedJar(file, buffer);
+                return jar.findCentralDirectory() >= 0 ? jar : null;
+            } finally {
+                raf.close();
+            }
+        }
+        
+        /**
+         * Locate the start of the central directory, returns -1 if the end of
+         * central directory record is not found or describes a zip64 archive
+         */
+        private int findCentralDirectory() {
+            ByteBuffer buf = this.buffer;
+            int limit = Math.max(0, buf.limit() - MappedJar.END_HEADER_SIZE - MappedJar.MAX_COMMENT_SIZE);
+            for (int pos = buf.limit() - MappedJar.END_HEADER_SIZE; pos >= limit; pos--) {
+                if (buf.getInt(pos) != MappedJar.END_HEADER) {
+                    continue;
+                }
+                int entries = buf.getShort(pos + 10) & 0xFFFF;
+                long offset = buf.getInt(pos + 16) & 0xFFFFFFFFL;
+                if (entries == 0xFFFF || offset == 0xFFFFFFFFL || offset >= pos) {
+                    return -1;
+                }
+                return (int)offset;
+            }
+            return -1;
+        }
+
+        @Override
+        void index(Map<String, Entry> index) {
+            ByteBuffer buf = this.buffer;
+            int pos = this.findCentralDirectory();
+            byte[] nameBytes = new byte[256];
+            while (pos >= 0 && pos + 46 <= buf.limit() && buf.getInt(pos) == MappedJar.CENTRAL_HEADER) {
+                int flags = buf.getShort(pos + 8) & 0xFFFF;
+                int method = buf.getShort(pos + 10) & 0xFFFF;
+                int compressedSize = buf.getInt(pos + 20);
+                int size = buf.getInt(pos + 24);
+                int nameLength = buf.getShort(pos + 28) & 0xFFFF;
+                int extraLength = buf.getShort(pos + 30) & 0xFFFF;
+                int commentLength = buf.getShort(pos + 32) & 0xFFFF;
+                int offset = buf.getInt(pos + 42);
+                
+                if (nameLength > nameBytes.length) {
+                    nameBytes = new byte[nameLength];
+                }
+                ByteBuffer nameBuf = buf.duplicate();
+                nameBuf.position(pos + 46);
+                nameBuf.get(nameBytes, 0, nameLength);
+                String name = (flags & MappedJar.FLAG_UTF8) != 0 || MappedJar.isAscii(nameBytes, nameLength)
+                        ? new String(nameBytes, 0, nameLength, Charsets.UTF_8) : new String(nameBytes, 0, nameLength, Charsets.ISO_8859_1);
+                
+                if ((flags & MappedJar.FLAG_ENCRYPTED) == 0 && !name.endsWith("/") && !index.containsKey(name)) {
+                    index.put(name, new Entry(this, name, offset, method, compressedSize, size));
+                }
+                pos += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+
+        @Override
+        byte[] read(Entry entry) throws IOException {
+            ByteBuffer buf = this.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (entry.offset < 0 || entry.offset + 30 > buf.limit() || buf.getInt(entry.offset) != MappedJar.LOCAL_HEADER) {
+                throw new IOException("Invalid local header for " + entry.name + " in " + this.file);
+            }
+            int dataStart = entry.offset + 30 + (buf.getShort(entry.offset + 26) & 0xFFFF) + (buf.getShort(entry.offset + 28) & 0xFFFF);
+            if (entry.compressedSize < 0 || dataStart + entry.compressedSize > buf.limit()) {
+                throw new IOException("Truncated entry " + entry.name + " in " + this.file);
+            }
+            
+            byte[] data = new byte[entry.compressedSize];
+            buf.position(dataStart);
+            buf.get(data);
+            
+            if (entry.method == ZipEntry.STORED) {
+                return data;
+            } else if (entry.method != ZipEntry.DEFLATED) {
+                throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name + " in " + this.file);
+            }
+            
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data, 0, data.length);
+                byte[] bytes = new byte[entry.size];
+                int read = 0;
+                boolean padded = false;
+                while (read < bytes.length) {
+                    int count = inflater.inflate(bytes, read, bytes.length - read);
+                    if (count == 0) {
+                        if (inflater.finished() || inflater.needsDictionary()) {
+                            break;
+                        }
+                        if (!inflater.needsInput() || padded) {
+                            throw new IOException("Truncated entry " + entry.name + " in " + this.file);
+                        }
+                        // Inflater in nowrap mode may need an extra dummy byte of input
+                        inflater.setInput(new byte[1]);
+                        padded = true;
+                    }
+                    read += count;
+                }
+                if (read != bytes.length) {
+                    throw new IOException("Size mismatch inflating " + entry.name + " in " + this.file);
+                }
+                return bytes;
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupt entry " + entry.name + " in " + this.file + ": " + ex.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+        
+        private static boolean isAscii(byte[] bytes, int length) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+    }
+    
+    /**
+     * Jar read through a single open {@link ZipFile}, used when the jar
+     * cannot be mapped
+     */
+    static final class ZipJar extends Source {
+        
+        private final ZipFile zip;
+        
+        ZipJar(File file) throws IOException {
+            super(file);
+            this.zip = new ZipFile(file);
+        }
+
+        @Override
+        void index(Map<String, Entry> index) {
+            for (Enumeration<? extends ZipEntry> entries = this.zip.entries(); entries.hasMoreElements();) {
+                ZipEntry zipEntry = entries.nextElement();
+                String name = zipEntry.getName();
+                if (!zipEntry.isDirectory() && !index.containsKey(name)) {
+                    index.put(name, new Entry(this, name, -1, zipEntry.getMethod(), (int)zipEntry.getCompressedSize(), (int)zipEntry.getSize()));
+                }
+            }
+        }
+
+        @Override
+        byte[] read(Entry entry) throws IOException {
+            ZipEntry zipEntry = this.zip.getEntry(entry.name);
+            if (zipEntry == null) {
+                return null;
+            }
+            InputStream in = this.zip.getInputStream(zipEntry);
+            try {
+                if (entry.size >= 0) {
+                    byte[] bytes = new byte[entry.size];
+                    ByteStreams.readFully(in, bytes);
+                    return bytes;
+                }
+                return ByteStreams.toByteArray(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        
+    }
+    
+    /**
+     * Directory source, entries are looked up on demand rather than walking
+     * the directory tree up front
+     */
+    static final class Directory extends Source {
+        
+        Directory(File file) {
+            super(file);
+        }
+
+        @Override
+        void index(Map<String, Entry> index) {
+            // Directories are not indexed
+        }
+        
+        Entry find(String name) {
+            File file = new File(this.file, name);
+            return file.isFile() ? new Entry(this, name, -1, ZipEntry.STORED, -1, (int)file.length()) : null;
+        }
+
+        @Override
+        byte[] read(Entry entry) throws IOException {
+            InputStream in = new FileInputStream(new File(this.file, entry.name));
+            try {
+                return ByteStreams.toByteArray(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        
+    }
+    
+    private static final Logger logger = LogManager.getLogger("mixim");
+    
+    /**
+     * Indexed sources, in precedence order
+     */
+    private final List<Source> sources = new ArrayList<Source>();
+    
+    /**
+     * Files which have been added, used to ignore duplicates
+     */
+    private final Set<File> files = new HashSet<File>();
+    
+    /**
+     * Directory sources, searched after the index
+     */
+    private final List<Directory> directories = new ArrayList<Directory>();
+    
+    /**
+     * Entry name to entry
+     */
+    private final Map<String, Entry> index = new HashMap<String, Entry>();
+    
+    /**
+     * Recently read entries, in access order
+     */
+    private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<String, byte[]>(64, 0.75F, true);
+    
+    /**
+     * Maximum size of the cache in bytes
+     */
+    private final int maxCacheSize;
+    
+    /**
+     * Current size of the cache in bytes
+     */
+    private int cacheSize;
+    
+    public ContainerClassIndex() {
+        this(ContainerClassIndex.DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxCacheSize Maximum number of bytes to retain in the entry
+     *      cache, 0 to disable caching
+     */
+    public ContainerClassIndex(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+    
+    /**
+     * Add a class path URL to the index, non-file URLs are ignored
+     * 
+     * @param url URL to add
+     * @return fluent interface
+     */
+    public ContainerClassIndex add(URL url) {
+        try {
+            URI uri = url.toURI();
+            if ("file".equals(uri.getScheme())) {
+                this.add(new File(uri));
+            }
+        } catch (Exception ex) {
+            ContainerClassIndex.logger.debug("Not indexing {}: {}", url, ex.getMessage());
+        }
+        return this;
+    }
+    
+    /**
+     * Add a jar or directory to the index. Files which do not exist or cannot
+     * be read are ignored.
+     * 
+     * @param file File to add
+     * @return fluent interface
+     */
+    public synchronized ContainerClassIndex add(File file) {
+        if (file == null || !this.files.add(file.getAbsoluteFile())) {
+            return this;
+        }
+        
+        if (file.isDirectory()) {
+            Directory directory = new Directory(file);
+            this.sources.add(directory);
+            this.directories.add(directory);
+            return this;
+        }
+        
+        if (!file.isFile()) {
+            return this;
+        }
+        
+        Source source = null;
+        try {
+            source = MappedJar.open(file);
+            if (source == null) {
+                source = new ZipJar(file);
+            }
+        } catch (IOException ex) {
+            ContainerClassIndex.logger.debug("Not indexing {}: {}", file, ex.getMessage());
+            return this;
+        }
+        
+        this.sources.add(source);
+        if (this.directories.isEmpty()) {
+            source.index(this.index);
+        } else {
+            // A directory which was added earlier may shadow entries in this
+            // jar, so the entries are only indexed if no directory has them
+            Map<String, Entry> entries = new HashMap<String, Entry>();
+            source.index(entries);
+            for (Entry entry : entries.values()) {
+                if (!this.index.containsKey(entry.name) && this.findInDirectories(entry.name, entry.source) == null) {
+                    this.index.put(entry.name, entry);
+                }
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Get the bytecode for the specified class
+     * 
+     * @param className Class name, in binary or internal format
+     * @return class bytes or null if the class is not in any container
+     * @throws IOException if the class entry cannot be read
+     */
+    public byte[] getClassBytes(String className) throws IOException {
+        return this.getResourceBytes(className.replace('.', '/') + ".class");
+    }
+    
+    /**
+     * Get the contents of the specified resource
+     * 
+     * @param name Resource path
+     * @return resource bytes or null if the resource is not in any container
+     * @throws IOException if the resource cannot be read
+     */
+    public byte[] getResourceBytes(String name) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            byte[] cached = this.cache.get(name);
+            if (cached != null) {
+                return cached.clone();
+            }
+            entry = this.find(name);
+        }
+        
+        if (entry == null) {
+            return null;
+        }
+        
+        byte[] bytes = entry.source.read(entry);
+        if (bytes != null) {
+            this.cache(name, bytes);
+        }
+        return bytes;
+    }
+
+    private Entry find(String name) {
+        Entry entry = this.index.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        return this.findInDirectories(name, null);
+    }
+
+    /**
+     * Search directories added before the specified source (or all
+     * directories if source is null)
+     */
+    private Entry findInDirectories(String name, Source before) {
+        for (Source source : this.sources) {
+            if (source == before) {
+                break;
+            }
+            if (source instanceof Directory) {
+                Entry entry = ((Directory)source).find(name);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        }
+        return null;
+    }
+    
+    private synchronized void cache(String name, byte[] bytes) {
+        if (bytes.length > this.maxCacheSize / 4 || this.cache.containsKey(name)) {
+            return;
+        }
+        
+        this.cache.put(name, bytes.clone());
+        this.cacheSize += bytes.length;
+        
+        for (Iterator<byte[]> iter = this.cache.values().iterator(); iter.hasNext() && this.cacheSize > this.maxCacheSize;) {
+            this.cacheSize -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+}
@@ -228,6 +228,15 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         DEBUG_EXPORT_FILTER(Option.DEBUG_EXPORT, "filter", false),
         
+        /**
+         * Number of classes which can be waiting to be written when exporting.
+         * Exported classes are written to disk by background threads, and if
+         * the queue is full further exports are dropped rather than holding
+         * up class loading. Forced exports are never dropped. Set to 0 to
+         * write exported classes synchronously.
+         */
+        DEBUG_EXPORT_QUEUE_SIZE(Option.DEBUG_EXPORT, "queueSize", "256"),
+        
         /**
          * Allow fernflower to be disabled even if it is found on the classpath
          */
@@ -241,6 +250,19 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         DEBUG_EXPORT_DECOMPILE_THREADED(Option.DEBUG_EXPORT_DECOMPILE, Inherit.ALLOW_OVERRIDE, "async"),
         
+        /**
+         * Number of threads to use when the decompiler is running
+         * asynchronously
+         */
+        DEBUG_EXPORT_DECOMPILE_WORKERS(Option.DEBUG_EXPORT_DECOMPILE_THREADED, "workers", "2"),
+        
+        /**
+         * Maximum number of queued classes which an asynchronous decompiler
+         * thread will decompile in a single pass. Larger batches amortise the
+         * cost of setting up the decompiler but use more memory.
+         */
+        DEBUG_EXPORT_DECOMPILE_BATCH_SIZE(Option.DEBUG_EXPORT_DECOMPILE_THREADED, "batchSize", "32"),
+        
         /**
          * By default, if the runtime export decompiler is active, mixin generic
          * signatures are merged into target classes. However this can cause
@@ -291,6 +313,26 @@ public final class MixinEnvironment implements ITokenProvider {
          * is only enabled during mixin prepare operations)
          */
         DEBUG_PROFILER(Option.DEBUG_ALL, Inherit.ALLOW_OVERRIDE, "profiler"),
+        
+        /**
+         * Write a structured record of selected configs, prepared, skipped and
+         * applied mixins, injector counts and generated classes to a file as
+         * they happen. Intended for comparing what mixin did between two runs
+         * without enabling verbose logging.
+         */
+        DEBUG_AUDIT_STREAM(Option.DEBUG_ALL, Inherit.INDEPENDENT, "auditStream"),
+        
+        /**
+         * Format of the audit stream, either <tt>json</tt> (newline-delimited
+         * JSON) or <tt>binary</tt>
+         */
+        DEBUG_AUDIT_STREAM_FORMAT(Option.DEBUG_AUDIT_STREAM, "format", "json"),
+        
+        /**
+         * File to write the audit stream to, defaults to a file in the audit
+         * directory in the debug output folder
+         */
+        DEBUG_AUDIT_STREAM_FILE(Option.DEBUG_AUDIT_STREAM, "file", ""),
 
         /**
          * Dumps the bytecode for the target class to disk when mixin
@@ -327,6 +369,14 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         HOT_SWAP("hotSwap"),
         
+        /**
+         * Amount of memory in KiB which the hot-swap agent may use to retain
+         * the original bytecode of target classes, the bytecode is kept
+         * compressed and the least recently used classes are moved to a
+         * temporary file once this is exceeded
+         */
+        HOT_SWAP_RETAINED_SIZE(Option.HOT_SWAP, Inherit.INDEPENDENT, "retainedSize", "16384"),
+        
         /**
          * Parent for environment settings
          */
@@ -382,6 +432,46 @@ public final class MixinEnvironment implements ITokenProvider {
          * Globally ignore the "required" attribute of all configurations
          */
         IGNORE_REQUIRED(Option.ENVIRONMENT, Inherit.INDEPENDENT, "ignoreRequired"),
+        
+        /**
+         * Skip mixins which were already applied to a target class by the
+         * ahead-of-time weaver (classes decorated with <tt>&#64;MixinWoven</tt>).
+         * Mixins which are not recorded on the target class are still applied
+         * as normal.
+         */
+        SKIP_PREWOVEN(Option.ENVIRONMENT, Inherit.INDEPENDENT, "skipPrewoven"),
+        
+        /**
+         * Fetch class metadata for classes which are not yet loaded without
+         * running the full transformer chain. On LaunchWrapper only name
+         * transformers are run for metadata lookups, which is safe as long as
+         * no other transformer changes the hierarchy or members of a class
+         * which mixins depend on.
+         */
+        LIGHTWEIGHT_METADATA(Option.ENVIRONMENT, Inherit.INDEPENDENT, "lightweightMetadata"),
+        
+        /**
+         * Fetch and parse mixin classes on worker threads ahead of the configs
+         * which consume them. This runs the transformer chain for mixin
+         * classes concurrently and so should only be enabled when all
+         * registered transformers are thread-safe.
+         */
+        PREFETCH_MIXINS(Option.ENVIRONMENT, Inherit.INDEPENDENT, "prefetchMixins"),
+        
+        /**
+         * Rewrite calls to accessor and invoker methods into direct field
+         * accesses and method calls on the target class where the target
+         * member is accessible from the caller. Only classes processed after
+         * the accessor's target class are rewritten.
+         */
+        DEVIRTUALISE_ACCESSORS(Option.ENVIRONMENT, Inherit.INDEPENDENT, "devirtualiseAccessors"),
+        
+        /**
+         * Directory in which to keep data which is reused between launches,
+         * such as compiled SRG tables and the manifest attributes of scanned
+         * containers. Nothing is persisted if this is not set.
+         */
+        CACHE_DIR(Option.ENVIRONMENT, Inherit.INDEPENDENT, "cacheDir", ""),
 
         /**
          * Default compatibility level to operate at
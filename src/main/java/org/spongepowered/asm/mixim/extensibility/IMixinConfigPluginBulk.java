@@ -0,0 +1,63 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.extensibility;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Optional extension of {@link IMixinConfigPlugin} for plugins which can
+ * decide which mixins to apply more efficiently when given all of the
+ * candidates at once, for example plugins which probe the classpath to make
+ * their decisions.
+ * 
+ * <p>When a config's plugin implements this interface, the plugin is called
+ * once with every (mixin, target) pair declared by the mixins being
+ * initialised instead of {@link IMixinConfigPlugin#shouldApplyMixin} being
+ * called for each pair. Pairs which the plugin does not decide are passed to
+ * {@link IMixinConfigPlugin#shouldApplyMixin} as normal. Every decision is
+ * cached for the lifetime of the config, so the plugin is consulted at most
+ * once for each pair.</p>
+ */
+public interface IMixinConfigPluginBulk extends IMixinConfigPlugin {
+    
+    /**
+     * Called during mixin initialisation with all of the targets declared by
+     * the mixins being initialised, allows this plugin to decide in one pass
+     * which mixins will be applied to which targets.
+     * 
+     * @param mixinTargets Map of fully qualified mixin class names to the
+     *      fully qualified names of the target classes each mixin declares,
+     *      read-only
+     * @return Map of fully qualified mixin class names to the targets each
+     *      mixin should be applied to. Declared targets missing from the set
+     *      for a mixin are removed from that mixin's target set. Mixins which
+     *      are not present in the returned map, or all mixins if the return
+     *      value is null, are passed to
+     *      {@link IMixinConfigPlugin#shouldApplyMixin} as normal
+     */
+    public abstract Map<String, Set<String>> shouldApplyMixins(Map<String, Set<String>> mixinTargets);
+    
+}
@@ -0,0 +1,288 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixim.gen;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.spongepowered.asm.mixim.gen.AccessorInfo.AccessorType;
+import org.spongepowered.asm.util.Bytecode;
+
+/**
+ * Registry of generated accessors and invokers which can be used to rewrite
+ * calls to accessor interface methods into direct field accesses and method
+ * calls on the target class. Accessors are registered as they are generated,
+ * so only call sites in classes transformed after the accessor's target class
+ * are rewritten.
+ * 
+ * <p>A call site is only rewritten if the target member would be accessible
+ * from the calling class: either the member and its owner are public, or the
+ * member is not private and the caller is in the same package as the target.
+ * Same-package access assumes that caller and target are defined by the same
+ * classloader.</p>
+ */
+public final class AccessorDevirtualiser {
+    
+    /**
+     * A registered accessor
+     */
+    static final class Entry {
+        
+        /**
+         * Replacement opcode for the accessor call
+         */
+        final int opcode;
+        
+        /**
+         * Target class
+         */
+        final String owner;
+        
+        final String name;
+        
+        final String desc;
+        
+        /**
+         * Target member access flags
+         */
+        final int access;
+        
+        /**
+         * Target class access flags
+         */
+        final int ownerAccess;
+        
+        Entry(int opcode, String owner, String name, String desc, int access, int ownerAccess) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.access = access;
+            this.ownerAccess = ownerAccess;
+        }
+        
+        boolean isAccessibleFrom(String className) {
+            if ((this.access & Opcodes.ACC_PRIVATE) != 0) {
+                return false;
+            }
+            if ((this.access & Opcodes.ACC_PUBLIC) != 0 && (this.ownerAccess & Opcodes.ACC_PUBLIC) != 0) {
+                return true;
+            }
+            return AccessorDevirtualiser.getPackage(this.owner).equals(AccessorDevirtualiser.getPackage(className));
+        }
+        
+        boolean isAmbiguous() {
+            return this.owner == null;
+        }
+        
+    }
+    
+    /**
+     * Marker for accessor methods which are applied to more than one target
+     * and therefore cannot be devirtualised. Multi-target mixins are normally
+     * rejected by {@link #createEntry} before registration, this is a backstop
+     * in case the same accessor is still registered against two owners.
+     */
+    private static final Entry AMBIGUOUS = new Entry(0, null, null, null, 0, 0);
+    
+    /**
+     * Registered accessors, keyed by accessor owner, name and descriptor
+     */
+    private static final Map<String, Entry> accessors = new ConcurrentHashMap<String, Entry>();
+    
+    /**
+     * Internal names of accessor mixins which have registered accessors, used
+     * to quickly reject call sites
+     */
+    private static final Map<String, Boolean> owners = new ConcurrentHashMap<String, Boolean>();
+    
+    private AccessorDevirtualiser() {
+    }
+    
+    /**
+     * Register a generated accessor
+     * 
+     * @param accessorOwner internal name of the accessor mixin
+     * @param info accessor info, must have been located
+     */
+    static void register(String accessorOwner, AccessorInfo info) {
+        // Static accessors are renamed when merged, callers use the original name
+        Entry entry = AccessorDevirtualiser.createEntry(info);
+        String key = AccessorDevirtualiser.getKey(accessorOwner, info.getMethodName(), info.getMethod().desc);
+        Entry existing = AccessorDevirtualiser.accessors.get(key);
+        if (entry == null || (existing != null && !existing.isAmbiguous() && !existing.owner.equals(entry.owner))) {
+            entry = AccessorDevirtualiser.AMBIGUOUS;
+        } else if (existing != null && existing.isAmbiguous()) {
+            return;
+        }
+        AccessorDevirtualiser.accessors.put(key, entry);
+        AccessorDevirtualiser.owners.put(accessorOwner, Boolean.TRUE);
+    }
+    
+    private static Entry createEntry(AccessorInfo info) {
+        // Call sites are rewritten as soon as the first target is transformed,
+        // so accessor mixins with more than one target must be rejected up
+        // front rather than when the next target is seen
+        if (info.getContext().getMixin().getTargetClasses().size() != 1) {
+            return null;
+        }
+        
+        ClassNode targetClass = info.getClassNode();
+        if ((targetClass.access & Opcodes.ACC_INTERFACE) != 0) {
+            return null;
+        }
+        
+        AccessorType type = info.type;
+        if (type == AccessorType.FIELD_GETTER || type == AccessorType.FIELD_SETTER) {
+            FieldNode field = info.getTargetField();
+            if (field == null || ((field.access & Opcodes.ACC_STATIC) != 0) != info.isStatic()
+                    || !field.desc.equals(info.getTargetFieldType().getDescriptor())) {
+                return null;
+            }
+            boolean isStatic = info.isStatic();
+            int opcode = type == AccessorType.FIELD_GETTER ? (isStatic ? Opcodes.GETSTATIC : Opcodes.GETFIELD)
+                    : (isStatic ? Opcodes.PUTSTATIC : Opcodes.PUTFIELD);
+            if (type == AccessorType.FIELD_SETTER && (field.access & Opcodes.ACC_FINAL) != 0) {
+                return null;
+            }
+            return new Entry(opcode, targetClass.name, field.name, field.desc, field.access, targetClass.access);
+        }
+        
+        if (type == AccessorType.METHOD_PROXY) {
+            MethodNode targetMethod = info.getTargetMethod();
+            if (targetMethod == null || targetMethod.name.startsWith("<") || Bytecode.isStatic(targetMethod) != info.isStatic()
+                    || !targetMethod.desc.equals(info.getMethod().desc)) {
+                return null;
+            }
+            int opcode = info.isStatic() ? Opcodes.INVOKESTATIC : Opcodes.INVOKEVIRTUAL;
+            return new Entry(opcode, targetClass.name, targetMethod.name, targetMethod.desc, targetMethod.access, targetClass.access);
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Rewrite calls to registered accessors in the supplied class into direct
+     * accesses on the accessor targets
+     * 
+     * @param classNode class to process
+     * @return true if any call site was rewritten
+     */
+    public static boolean devirtualise(ClassNode classNode) {
+        if (AccessorDevirtualiser.accessors.isEmpty()) {
+            return false;
+        }
+        
+        boolean modified = false;
+        for (MethodNode method : classNode.methods) {
+            if (method.instructions == null || method.instructions.size() == 0) {
+                continue;
+            }
+            for (AbstractInsnNode insn : method.instructions.toArray()) {
+                if (!(insn instanceof MethodInsnNode)) {
+                    continue;
+                }
+                MethodInsnNode methodInsn = (MethodInsnNode)insn;
+                if ((insn.getOpcode() != Opcodes.INVOKEINTERFACE && insn.getOpcode() != Opcodes.INVOKESTATIC)
+                        || !AccessorDevirtualiser.owners.containsKey(methodInsn.owner)) {
+                    continue;
+                }
+                Entry entry = AccessorDevirtualiser.accessors.get(AccessorDevirtualiser.getKey(methodInsn.owner, methodInsn.name, methodInsn.desc));
+                boolean isStatic = insn.getOpcode() == Opcodes.INVOKESTATIC;
+                if (entry == null || entry.isAmbiguous() || AccessorDevirtualiser.isStatic(entry) != isStatic
+                        || !entry.isAccessibleFrom(classNode.name)) {
+                    continue;
+                }
+                AccessorDevirtualiser.rewrite(method, methodInsn, entry);
+                modified = true;
+            }
+        }
+        return modified;
+    }
+    
+    private static void rewrite(MethodNode method, MethodInsnNode insn, Entry entry) {
+        InsnList insns = new InsnList();
+        if (!AccessorDevirtualiser.isStatic(entry)) {
+            Type[] args = Type.getArgumentTypes(insn.desc);
+            if (args.length == 0) {
+                insns.add(new TypeInsnNode(Opcodes.CHECKCAST, entry.owner));
+            } else if (args.length == 1 && args[0].getSize() == 1) {
+                insns.add(new InsnNode(Opcodes.SWAP));
+                insns.add(new TypeInsnNode(Opcodes.CHECKCAST, entry.owner));
+                insns.add(new InsnNode(Opcodes.SWAP));
+            } else {
+                // Spill the arguments so that the receiver can be cast
+                int[] locals = new int[args.length];
+                int local = method.maxLocals;
+                for (int arg = 0; arg < args.length; arg++) {
+                    locals[arg] = local;
+                    local += args[arg].getSize();
+                }
+                for (int arg = args.length - 1; arg >= 0; arg--) {
+                    insns.add(new VarInsnNode(args[arg].getOpcode(Opcodes.ISTORE), locals[arg]));
+                }
+                insns.add(new TypeInsnNode(Opcodes.CHECKCAST, entry.owner));
+                for (int arg = 0; arg < args.length; arg++) {
+                    insns.add(new VarInsnNode(args[arg].getOpcode(Opcodes.ILOAD), locals[arg]));
+                }
+                method.maxLocals = local;
+            }
+        }
+        
+        if (entry.opcode == Opcodes.INVOKEVIRTUAL || entry.opcode == Opcodes.INVOKESTATIC) {
+            insns.add(new MethodInsnNode(entry.opcode, entry.owner, entry.name, entry.desc, false));
+        } else {
+            insns.add(new FieldInsnNode(entry.opcode, entry.owner, entry.name, entry.desc));
+        }
+        method.instructions.insertBefore(insn, insns);
+        method.instructions.remove(insn);
+    }
+    
+    private static boolean isStatic(Entry entry) {
+        return entry.opcode == Opcodes.GETSTATIC || entry.opcode == Opcodes.PUTSTATIC || entry.opcode == Opcodes.INVOKESTATIC;
+    }
+
+    private static String getKey(String owner, String name, String desc) {
+        return owner + "." + name + desc;
+    }
+    
+    static String getPackage(String className) {
+        int pos = className.lastIndexOf('/');
+        return pos > -1 ? className.substring(0, pos) : "";
+    }
+
+}
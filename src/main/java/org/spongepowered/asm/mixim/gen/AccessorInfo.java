@@ -494,6 +494,9 @@ public class AccessorInfo extends SpecialMethodInfo {
     public MethodNode generate() {
         MethodNode generatedAccessor = this.generator.generate();
         Annotations.merge(this.method, generatedAccessor);
+        if (this.mixim.getEnvironment().getOption(Option.DEVIRTUALISE_ACCESSORS)) {
+            AccessorDevirtualiser.register(this.mixim.getClassRef(), this);
+        }
         return generatedAccessor;
     }
 
@@ -24,6 +24,10 @@
  */
 package org.spongepowered.asm.mixim.injection.struct;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
@@ -91,6 +95,72 @@ import com.google.common.base.Strings;
  */
 public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelectorConstructor {
     
+    /**
+     * Key for the parse cache, the reference mapper is compared by identity
+     * since its mappings are specific to the owning config
+     */
+    private static final class ParseKey {
+        
+        private final String input;
+        
+        private final IReferenceMapper refMapper;
+        
+        private final String className;
+        
+        private final String context;
+        
+        private final int hash;
+        
+        ParseKey(String input, IReferenceMapper refMapper, String className) {
+            this.input = input;
+            this.refMapper = refMapper;
+            this.className = className;
+            this.context = refMapper != null ? refMapper.getContext() : null;
+            this.hash = Objects.hashCode(input, className, this.context) * 31 + System.identityHashCode(refMapper);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ParseKey)) {
+                return false;
+            }
+            ParseKey other = (ParseKey)obj;
+            return this.hash == other.hash && this.refMapper == other.refMapper && Objects.equal(this.input, other.input)
+                    && Objects.equal(this.className, other.className) && Objects.equal(this.context, other.context);
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+        
+    }
+    
+    /**
+     * Maximum number of entries in the parse cache
+     */
+    private static final int PARSE_CACHE_SIZE = 4096;
+    
+    /**
+     * Recently parsed selectors, the same selector strings are parsed for
+     * every target of a mixin and by every injection point which uses them.
+     * Since MemberInfo is immutable the parsed instances are shared.
+     */
+    private static final Map<ParseKey, MemberInfo> parseCache = new LinkedHashMap<ParseKey, MemberInfo>(256, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ParseKey, MemberInfo> eldest) {
+            return this.size() > MemberInfo.PARSE_CACHE_SIZE;
+        }
+    };
+    
+    private static final Pattern PATTERN_OWNER = Pattern.compile("(?i)^[\\w\\p{Sc}/]+$");
+    
+    private static final Pattern PATTERN_NAME = Pattern.compile("(?i)^<?[\\w\\p{Sc}]+>?$");
+    
+    private static final Pattern PATTERN_DESC = Pattern.compile("^(\\([\\w\\p{Sc}\\[/;]*\\))?\\[*[\\w\\p{Sc}/;]+$");
+    
     /**
      * Member owner in internal form but without L;, can be null
      */
@@ -120,6 +190,12 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      * The actual String value passed into the {@link #parse} method 
      */
     private final String unparsed;
+    
+    /**
+     * Set once {@link #validate} has succeeded, cached instances are validated
+     * repeatedly
+     */
+    private volatile boolean validated;
 
     /**
      * ctor
@@ -475,9 +551,13 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      */
     @Override
     public MemberInfo validate() throws InvalidMemberDescriptorException {
+        if (this.validated) {
+            return this;
+        }
+        
         // Extremely naive class name validation, just to spot really egregious errors
         if (this.owner != null) {
-            if (!this.owner.matches("(?i)^[\\w\\p{Sc}/]+$")) {
+            if (!MemberInfo.PATTERN_OWNER.matcher(this.owner).matches()) {
                 throw new InvalidMemberDescriptorException("Invalid owner: " + this.owner);
             }
             // We can't detect this situation 100% reliably, but we can take a
@@ -490,12 +570,12 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
         }
         
         // Also naive validation, we're looking for stupid errors here
-        if (this.name != null && !this.name.matches("(?i)^<?[\\w\\p{Sc}]+>?$")) {
+        if (this.name != null && !MemberInfo.PATTERN_NAME.matcher(this.name).matches()) {
             throw new InvalidMemberDescriptorException("Invalid name: " + this.name);
         }
         
         if (this.desc != null) {
-            if (!this.desc.matches("^(\\([\\w\\p{Sc}\\[/;]*\\))?\\[*[\\w\\p{Sc}/;]+$")) {
+            if (!MemberInfo.PATTERN_DESC.matcher(this.desc).matches()) {
                 throw new InvalidMemberDescriptorException("Invalid descriptor: " + this.desc);
             }
             if (this.isField()) {
@@ -521,6 +601,7 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
             }
         }
         
+        this.validated = true;
         return this;
     }
     
@@ -555,14 +636,16 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      */
     @Override
     public MatchResult matches(String owner, String name, String desc) {
-        if (this.desc != null && desc != null && !this.desc.equals(desc)) {
+        // String hashes are cached and instruction operands are shared per
+        // class, so comparing hashes first rejects most candidates cheaply
+        if (this.desc != null && desc != null && (this.desc.hashCode() != desc.hashCode() || !this.desc.equals(desc))) {
             return MatchResult.NONE;
         }
-        if (this.owner != null && owner != null && !this.owner.equals(owner)) {
+        if (this.owner != null && owner != null && (this.owner.hashCode() != owner.hashCode() || !this.owner.equals(owner))) {
             return MatchResult.NONE;
         }
         if (this.name != null && name != null) {
-            if (this.name.equals(name)) {
+            if (this.name.hashCode() == name.hashCode() && this.name.equals(name)) {
                 return MatchResult.EXACT_MATCH;
             }
             if (this.name.equalsIgnoreCase(name)) {
@@ -684,6 +767,22 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      * @return parsed MemberInfo
      */
     public static MemberInfo parse(String input, IReferenceMapper refMapper, String className) {
+        ParseKey key = new ParseKey(input, refMapper, className);
+        synchronized (MemberInfo.parseCache) {
+            MemberInfo cached = MemberInfo.parseCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        
+        MemberInfo parsed = MemberInfo.parseUncached(input, refMapper, className);
+        synchronized (MemberInfo.parseCache) {
+            MemberInfo.parseCache.put(key, parsed);
+        }
+        return parsed;
+    }
+    
+    private static MemberInfo parseUncached(String input, IReferenceMapper refMapper, String className) {
         String desc = null;
         String owner = null;
         String name = Strings.nullToEmpty(input).replaceAll("\\s", "");
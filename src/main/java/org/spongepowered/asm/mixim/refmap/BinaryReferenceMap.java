@@ -0,0 +1,541 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixim.refmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary encoding of a {@link ReferenceMapper refmap}, written by the
+ * annotation processor alongside the JSON refmap. All strings are stored once
+ * in a sorted string table, which means that comparing two string indices is
+ * equivalent to comparing the strings themselves. Each mapping set (the
+ * default set and one for each obfuscation context) stores a table of owner
+ * classes sorted by name pointing into a run of mapping entries sorted by
+ * reference, plus a reverse index of every entry sorted by reference which
+ * serves lookups where the owner class is not known.
+ * 
+ * <p>Queries are answered directly from the backing buffer, strings are only
+ * decoded when a binary search visits them and the mappings are never
+ * materialised into maps.</p>
+ * 
+ * <p>The header records the length and checksum of the JSON refmap it was
+ * generated alongside, so that a JSON refmap which was rewritten by a later
+ * build step is never shadowed by a stale binary refmap.</p>
+ */
+public final class BinaryReferenceMap {
+    
+    /**
+     * A single mapping set within the binary refmap
+     */
+    final class Section {
+        
+        /**
+         * Absolute offset of the class table
+         */
+        private final int classTable;
+        
+        /**
+         * Number of classes in the class table
+         */
+        private final int classCount;
+        
+        /**
+         * Absolute offset of the entry table
+         */
+        private final int entryTable;
+        
+        /**
+         * Absolute offset of the reverse index
+         */
+        private final int reverseTable;
+        
+        /**
+         * Number of entries in the reverse index
+         */
+        private final int reverseCount;
+        
+        Section(int classTable, int classCount, int entryTable, int reverseTable, int reverseCount) {
+            this.classTable = classTable;
+            this.classCount = classCount;
+            this.entryTable = entryTable;
+            this.reverseTable = reverseTable;
+            this.reverseCount = reverseCount;
+        }
+        
+        /**
+         * Remap the supplied reference, returns the original reference if no
+         * mapping exists
+         * 
+         * @param className owner class, can be null
+         * @param reference reference to remap
+         * @return remapped reference or the original reference
+         */
+        String remap(String className, String reference) {
+            int ref = BinaryReferenceMap.this.indexOf(reference);
+            if (ref < 0) {
+                return reference;
+            }
+            
+            if (className == null) {
+                int entry = BinaryReferenceMap.this.search(this.reverseTable, this.reverseCount, BinaryReferenceMap.ENTRY_SIZE, ref);
+                return entry < 0 ? reference : BinaryReferenceMap.this.getString(this.reverseTable, entry, BinaryReferenceMap.ENTRY_SIZE);
+            }
+            
+            int owner = BinaryReferenceMap.this.indexOf(className);
+            if (owner < 0) {
+                return reference;
+            }
+            
+            int cls = BinaryReferenceMap.this.search(this.classTable, this.classCount, BinaryReferenceMap.CLASS_SIZE, owner);
+            if (cls < 0) {
+                return reference;
+            }
+            
+            ByteBuffer buffer = BinaryReferenceMap.this.buffer;
+            int firstEntry = buffer.getInt(this.classTable + cls * BinaryReferenceMap.CLASS_SIZE + 4);
+            int entryCount = buffer.getInt(this.classTable + cls * BinaryReferenceMap.CLASS_SIZE + 8);
+            int entries = this.entryTable + firstEntry * BinaryReferenceMap.ENTRY_SIZE;
+            int entry = BinaryReferenceMap.this.search(entries, entryCount, BinaryReferenceMap.ENTRY_SIZE, ref);
+            return entry < 0 ? reference : BinaryReferenceMap.this.getString(entries, entry, BinaryReferenceMap.ENTRY_SIZE);
+        }
+        
+        /**
+         * Decode all mappings in this section into the supplied map
+         */
+        void copyTo(Map<String, Map<String, String>> mappings) {
+            ByteBuffer buffer = BinaryReferenceMap.this.buffer;
+            for (int cls = 0; cls < this.classCount; cls++) {
+                int pos = this.classTable + cls * BinaryReferenceMap.CLASS_SIZE;
+                String className = BinaryReferenceMap.this.getString(buffer.getInt(pos));
+                int firstEntry = buffer.getInt(pos + 4);
+                int entryCount = buffer.getInt(pos + 8);
+                Map<String, String> classMappings = new HashMap<String, String>();
+                for (int entry = firstEntry; entry < firstEntry + entryCount; entry++) {
+                    int entryPos = this.entryTable + entry * BinaryReferenceMap.ENTRY_SIZE;
+                    classMappings.put(BinaryReferenceMap.this.getString(buffer.getInt(entryPos)),
+                            BinaryReferenceMap.this.getString(buffer.getInt(entryPos + 4)));
+                }
+                mappings.put(className, classMappings);
+            }
+        }
+        
+    }
+    
+    /**
+     * File magic, "MXRF" 
+     */
+    private static final int MAGIC = 0x4D585246;
+    
+    /**
+     * Format version
+     */
+    private static final int VERSION = 1;
+    
+    /**
+     * Size of a class table record: name, first entry, entry count
+     */
+    static final int CLASS_SIZE = 12;
+    
+    /**
+     * Size of an entry record: reference, remapped reference
+     */
+    static final int ENTRY_SIZE = 8;
+    
+    /**
+     * Size of a section record: context, class table, class count, entry
+     * table, reverse table, reverse count
+     */
+    private static final int SECTION_SIZE = 24;
+    
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    
+    /**
+     * Backing buffer
+     */
+    final ByteBuffer buffer;
+    
+    /**
+     * Length of the JSON refmap this binary refmap was generated from
+     */
+    private final int sourceLength;
+    
+    /**
+     * Checksum of the JSON refmap this binary refmap was generated from
+     */
+    private final int sourceChecksum;
+    
+    /**
+     * Number of strings in the string table
+     */
+    private final int stringCount;
+    
+    /**
+     * Absolute offset of the string offset table
+     */
+    private final int stringTable;
+    
+    /**
+     * Decoded strings, populated on demand
+     */
+    private final String[] strings;
+    
+    /**
+     * Default mapping set
+     */
+    private final Section defaultSection;
+    
+    /**
+     * Mapping sets keyed by obfuscation context
+     */
+    private final Map<String, Section> sections = new HashMap<String, Section>();
+    
+    private BinaryReferenceMap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != BinaryReferenceMap.MAGIC) {
+            throw new IllegalArgumentException("Not a binary refmap");
+        }
+        int version = buffer.getInt(4);
+        if (version != BinaryReferenceMap.VERSION) {
+            throw new IllegalArgumentException("Unsupported binary refmap version " + version);
+        }
+        this.sourceLength = buffer.getInt(8);
+        this.sourceChecksum = buffer.getInt(12);
+        this.stringCount = buffer.getInt(16);
+        this.stringTable = buffer.getInt(20);
+        this.strings = new String[this.stringCount];
+        
+        int sectionCount = buffer.getInt(24);
+        Section defaultSection = null;
+        for (int index = 0; index < sectionCount; index++) {
+            int pos = 28 + index * BinaryReferenceMap.SECTION_SIZE;
+            int context = buffer.getInt(pos);
+            Section section = new Section(buffer.getInt(pos + 4), buffer.getInt(pos + 8), buffer.getInt(pos + 12), buffer.getInt(pos + 16),
+                    buffer.getInt(pos + 20));
+            if (context < 0) {
+                defaultSection = section;
+            } else {
+                this.sections.put(this.getString(context), section);
+            }
+        }
+        this.defaultSection = defaultSection != null ? defaultSection : new Section(0, 0, 0, 0, 0);
+    }
+    
+    /**
+     * Get whether this binary refmap was generated alongside the supplied JSON
+     * refmap. The checksum is only computed if the length matches.
+     * 
+     * @param json raw (UTF-8 encoded) JSON refmap contents
+     * @return true if the length and checksum of the JSON refmap match
+     */
+    public boolean matches(byte[] json) {
+        return json.length == this.sourceLength && BinaryReferenceMap.checksum(json) == this.sourceChecksum;
+    }
+    
+    /**
+     * Remap a reference using the mapping set for the specified context,
+     * falling back to the default set if the context is null or unknown
+     * 
+     * @param context obfuscation context, can be null
+     * @param className owner class, can be null
+     * @param reference reference to remap
+     * @return remapped reference or the original reference
+     */
+    public String remap(String context, String className, String reference) {
+        return this.getSection(context).remap(className, reference);
+    }
+    
+    /**
+     * Decode all mappings into the supplied maps, used when a refmap backed by
+     * a binary refmap needs to be modified or serialised
+     * 
+     * @param mappings default mapping set to populate
+     * @param data context mapping sets to populate
+     */
+    public void copyTo(Map<String, Map<String, String>> mappings, Map<String, Map<String, Map<String, String>>> data) {
+        this.defaultSection.copyTo(mappings);
+        for (Entry<String, Section> section : this.sections.entrySet()) {
+            Map<String, Map<String, String>> contextMappings = new HashMap<String, Map<String, String>>();
+            section.getValue().copyTo(contextMappings);
+            data.put(section.getKey(), contextMappings);
+        }
+    }
+    
+    private Section getSection(String context) {
+        if (context != null) {
+            Section section = this.sections.get(context);
+            if (section != null) {
+                return section;
+            }
+        }
+        return this.defaultSection;
+    }
+    
+    /**
+     * Binary search the string table for the specified string
+     * 
+     * @return string index or -1 if the string is not in the table
+     */
+    int indexOf(String value) {
+        int low = 0, high = this.stringCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.getString(mid).compareTo(value);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Binary search a table of records whose first field is a string index
+     * 
+     * @return record index or -1 if no record has the specified key
+     */
+    int search(int table, int count, int recordSize, int key) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = this.buffer.getInt(table + mid * recordSize);
+            if (value < key) {
+                low = mid + 1;
+            } else if (value > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Get the string referenced by the second field of a record
+     */
+    String getString(int table, int record, int recordSize) {
+        return this.getString(this.buffer.getInt(table + record * recordSize + 4));
+    }
+    
+    /**
+     * Get a string from the string table, decoding it if necessary
+     */
+    String getString(int index) {
+        String value = this.strings[index];
+        if (value == null) {
+            int pos = this.buffer.getInt(this.stringTable + index * 4);
+            int length = this.buffer.getInt(pos);
+            byte[] bytes = new byte[length];
+            ByteBuffer slice = this.buffer.duplicate();
+            slice.position(pos + 4);
+            slice.get(bytes);
+            value = new String(bytes, BinaryReferenceMap.UTF_8);
+            this.strings[index] = value;
+        }
+        return value;
+    }
+    
+    /**
+     * Open a binary refmap from the supplied buffer. The buffer is used in
+     * place and must not be modified afterwards.
+     * 
+     * @param buffer buffer containing the binary refmap
+     * @return binary refmap
+     * @throws IllegalArgumentException if the buffer does not contain a
+     *      supported binary refmap
+     */
+    public static BinaryReferenceMap open(ByteBuffer buffer) {
+        return new BinaryReferenceMap(buffer.duplicate());
+    }
+    
+    /**
+     * Get the name of the binary refmap resource which accompanies the
+     * specified JSON refmap resource
+     * 
+     * @param resourceName JSON refmap resource name
+     * @return binary refmap resource name
+     */
+    public static String getResourceName(String resourceName) {
+        if (resourceName.endsWith(".json")) {
+            return resourceName.substring(0, resourceName.length() - 5) + ".bin";
+        }
+        return resourceName + ".bin";
+    }
+    
+    /**
+     * Write a binary refmap
+     * 
+     * @param json JSON refmap the mappings were written to, used to validate
+     *      the binary refmap when it is read
+     * @param mappings default mapping set
+     * @param data context mapping sets
+     * @param out stream to write to
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public static void write(CharSequence json, Map<String, Map<String, String>> mappings, Map<String, Map<String, Map<String, String>>> data,
+            OutputStream out) throws IOException {
+        TreeSet<String> stringSet = new TreeSet<String>();
+        BinaryReferenceMap.collectStrings(mappings, stringSet);
+        for (Entry<String, Map<String, Map<String, String>>> context : data.entrySet()) {
+            stringSet.add(context.getKey());
+            BinaryReferenceMap.collectStrings(context.getValue(), stringSet);
+        }
+        String[] strings = stringSet.toArray(new String[stringSet.size()]);
+        Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+        for (int index = 0; index < strings.length; index++) {
+            stringIndex.put(strings[index], Integer.valueOf(index));
+        }
+        
+        List<String> contexts = new ArrayList<String>(new TreeSet<String>(data.keySet()));
+        int sectionCount = contexts.size() + 1;
+        ByteArrayOutputStream tables = new ByteArrayOutputStream();
+        DataOutputStream tableData = new DataOutputStream(tables);
+        int tableBase = 28 + sectionCount * BinaryReferenceMap.SECTION_SIZE;
+        
+        int[][] sections = new int[sectionCount][];
+        sections[0] = BinaryReferenceMap.writeSection(-1, mappings, stringIndex, tableData, tableBase);
+        for (int index = 0; index < contexts.size(); index++) {
+            String context = contexts.get(index);
+            sections[index + 1] = BinaryReferenceMap.writeSection(stringIndex.get(context).intValue(), data.get(context), stringIndex,
+                    tableData, tableBase);
+        }
+        tableData.flush();
+        
+        int stringTable = tableBase + tables.size();
+        byte[][] encoded = new byte[strings.length][];
+        int stringPos = stringTable + strings.length * 4;
+        int[] stringOffsets = new int[strings.length];
+        for (int index = 0; index < strings.length; index++) {
+            encoded[index] = strings[index].getBytes(BinaryReferenceMap.UTF_8);
+            stringOffsets[index] = stringPos;
+            stringPos += 4 + encoded[index].length;
+        }
+        
+        byte[] source = json.toString().getBytes(BinaryReferenceMap.UTF_8);
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeInt(BinaryReferenceMap.MAGIC);
+        dataOut.writeInt(BinaryReferenceMap.VERSION);
+        dataOut.writeInt(source.length);
+        dataOut.writeInt(BinaryReferenceMap.checksum(source));
+        dataOut.writeInt(strings.length);
+        dataOut.writeInt(stringTable);
+        dataOut.writeInt(sectionCount);
+        for (int[] section : sections) {
+            for (int value : section) {
+                dataOut.writeInt(value);
+            }
+        }
+        tables.writeTo(dataOut);
+        for (int offset : stringOffsets) {
+            dataOut.writeInt(offset);
+        }
+        for (byte[] string : encoded) {
+            dataOut.writeInt(string.length);
+            dataOut.write(string);
+        }
+        dataOut.flush();
+    }
+
+    private static void collectStrings(Map<String, Map<String, String>> mappings, TreeSet<String> strings) {
+        for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+            strings.add(classMappings.getKey());
+            for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                strings.add(mapping.getKey());
+                strings.add(mapping.getValue());
+            }
+        }
+    }
+
+    /**
+     * Write the class table, entry table and reverse index for a mapping set
+     * and return the section record
+     */
+    private static int[] writeSection(int context, Map<String, Map<String, String>> mappings, Map<String, Integer> stringIndex,
+            DataOutputStream out, int tableBase) throws IOException {
+        TreeMap<String, Map<String, String>> classes = new TreeMap<String, Map<String, String>>();
+        for (Entry<String, Map<String, String>> classMappings : mappings.entrySet()) {
+            if (classMappings.getKey() != null) {
+                classes.put(classMappings.getKey(), classMappings.getValue());
+            }
+        }
+        
+        int classTable = tableBase + out.size();
+        int firstEntry = 0;
+        for (Entry<String, Map<String, String>> classMappings : classes.entrySet()) {
+            out.writeInt(stringIndex.get(classMappings.getKey()).intValue());
+            out.writeInt(firstEntry);
+            out.writeInt(classMappings.getValue().size());
+            firstEntry += classMappings.getValue().size();
+        }
+        
+        // Reverse index keeps the first owner (in class name order) for each
+        // reference, so that lookups without an owner are deterministic
+        Map<Integer, Integer> reverse = new TreeMap<Integer, Integer>();
+        int entryTable = tableBase + out.size();
+        for (Map<String, String> classMappings : classes.values()) {
+            // String indices follow string order, so sorting by reference
+            // also sorts the entries by string index
+            for (Entry<String, String> mapping : new TreeMap<String, String>(classMappings).entrySet()) {
+                Integer ref = stringIndex.get(mapping.getKey());
+                Integer target = stringIndex.get(mapping.getValue());
+                out.writeInt(ref.intValue());
+                out.writeInt(target.intValue());
+                if (!reverse.containsKey(ref)) {
+                    reverse.put(ref, target);
+                }
+            }
+        }
+        
+        int reverseTable = tableBase + out.size();
+        for (Entry<Integer, Integer> entry : reverse.entrySet()) {
+            out.writeInt(entry.getKey().intValue());
+            out.writeInt(entry.getValue().intValue());
+        }
+        
+        return new int[] { context, classTable, classes.size(), entryTable, reverseTable, reverse.size() };
+    }
+    
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int)crc.getValue();
+    }
+
+}
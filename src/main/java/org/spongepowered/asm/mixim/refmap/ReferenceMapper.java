@@ -24,10 +24,15 @@
  */
 package org.spongepowered.asm.mixim.refmap;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -37,7 +42,9 @@ import org.spongepowered.asm.service.IMiximService;
 import org.spongepowered.asm.service.MiximService;
 import org.spongepowered.asm.util.logging.MessageRouter;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -96,6 +103,13 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      */
     private transient String resource;
     
+    /**
+     * Binary refmap backing this refmap, if this refmap was read from a binary
+     * refmap then lookups are served from the binary refmap and the mapping
+     * tables above remain empty until the refmap is modified or serialised
+     */
+    private transient BinaryReferenceMap binary;
+    
     /**
      * Create an empty refmap
      */
@@ -177,6 +191,10 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      */
     @Override
     public String remapWithContext(String context, String className, String reference) {
+        BinaryReferenceMap binary = this.binary;
+        if (binary != null) {
+            return binary.remap(context, className, reference);
+        }
         Map<String, Map<String, String>> mappings = this.mappings;
         if (context != null) {
             mappings = this.data.get(context);
@@ -207,6 +225,25 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
         return remappedReference != null ? remappedReference : reference;
     }
     
+    /**
+     * Get the mapping set for the specified context, falling back to the
+     * default mappings if the context is null or unknown. The returned map is
+     * the live mapping set and must not be modified. Returns null if this
+     * refmap is still backed by a binary refmap, since building the mapping
+     * tables would defeat the point of the binary refmap.
+     * 
+     * @param context Obfuscation context, can be null
+     * @return mappings keyed by owner class, or null if the mappings have not
+     *      been decoded
+     */
+    synchronized Map<String, Map<String, String>> getDecodedMappings(String context) {
+        if (this.binary != null) {
+            return null;
+        }
+        Map<String, Map<String, String>> mappings = context != null ? this.data.get(context) : null;
+        return mappings != null ? mappings : this.mappings;
+    }
+    
     /**
      * Add a mapping to this refmap
      * 
@@ -224,6 +261,7 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
         if (conformedReference.equals(newReference)) {
             return null;
         }
+        this.materialise();
         Map<String, Map<String, String>> mappings = this.mappings;
         if (context != null) {
             mappings = this.data.get(context);
@@ -246,9 +284,39 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      * @param writer Writer to write to
      */
     public void write(Appendable writer) {
+        this.materialise();
         new GsonBuilder().setPrettyPrinting().create().toJson(this, writer);
     }
     
+    /**
+     * Write this refmap out in binary form, see {@link BinaryReferenceMap}.
+     * The binary refmap is only used at runtime if the accompanying JSON
+     * refmap is unchanged.
+     * 
+     * @param json JSON refmap which was written by {@link #write}
+     * @param out Stream to write to
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public void writeBinary(CharSequence json, OutputStream out) throws IOException {
+        this.materialise();
+        BinaryReferenceMap.write(json, this.mappings, this.data, out);
+    }
+    
+    /**
+     * Decode the backing binary refmap (if any) into the mapping tables
+     */
+    private synchronized void materialise() {
+        if (this.binary != null) {
+            this.binary.copyTo(this.mappings, this.data);
+            this.binary = null;
+        }
+    }
+    
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        this.materialise();
+        out.defaultWriteObject();
+    }
+    
     /**
      * Read a new refmap from the specified resource
      * 
@@ -256,13 +324,26 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
      * @return new refmap or {@link #DEFAULT_MAPPER} if reading fails
      */
     public static ReferenceMapper read(String resourcePath) {
-        Reader reader = null;
+        InputStream resource = null;
         try {
             IMiximService service = MiximService.getService();
-            InputStream resource = service.getResourceAsStream(resourcePath);
+            resource = service.getResourceAsStream(resourcePath);
             if (resource != null) {
-                reader = new InputStreamReader(resource);
-                ReferenceMapper mapper = ReferenceMapper.readJson(reader);
+                ReferenceMapper mapper;
+                BinaryReferenceMap binary = ReferenceMapper.readBinary(service, resourcePath);
+                if (binary != null) {
+                    // The JSON is only needed as raw bytes to validate the
+                    // binary refmap, and is only parsed if validation fails
+                    byte[] json = ByteStreams.toByteArray(resource);
+                    if (binary.matches(json)) {
+                        mapper = new ReferenceMapper();
+                        mapper.binary = binary;
+                    } else {
+                        mapper = ReferenceMapper.readJson(new InputStreamReader(new ByteArrayInputStream(json), Charsets.UTF_8));
+                    }
+                } else {
+                    mapper = ReferenceMapper.readJson(new InputStreamReader(resource, Charsets.UTF_8));
+                }
                 mapper.setResourceName(resourcePath);
                 return mapper;
             }
@@ -273,7 +354,7 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
             MessageRouter.getMessager().printMessage(Kind.ERROR, String.format("Failed reading REFMAP JSON from %s: %s %s",
                     resourcePath, ex.getClass().getName(), ex.getMessage()));
         } finally {
-            Closeables.closeQuietly(reader);
+            Closeables.closeQuietly(resource);
         }
         
         return ReferenceMapper.DEFAULT_MAPPER;
@@ -296,6 +377,25 @@ public final class ReferenceMapper implements IReferenceMapper, Serializable {
         }
     }
 
+    /**
+     * Attempt to read the binary refmap which accompanies the specified JSON
+     * refmap, returns null if there is no binary refmap or if it is invalid.
+     * The caller must check that the binary refmap matches the JSON refmap.
+     */
+    private static BinaryReferenceMap readBinary(IMiximService service, String resourcePath) {
+        InputStream resource = service.getResourceAsStream(BinaryReferenceMap.getResourceName(resourcePath));
+        if (resource == null) {
+            return null;
+        }
+        try {
+            return BinaryReferenceMap.open(ByteBuffer.wrap(ByteStreams.toByteArray(resource)));
+        } catch (Exception ex) {
+            return null;
+        } finally {
+            Closeables.closeQuietly(resource);
+        }
+    }
+
     private static ReferenceMapper readJson(Reader reader) {
         return new Gson().fromJson(reader, ReferenceMapper.class);
     }
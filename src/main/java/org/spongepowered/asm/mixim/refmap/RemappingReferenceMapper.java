@@ -25,7 +25,6 @@
 package org.spongepowered.asm.mixim.refmap;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -35,10 +34,7 @@ import org.apache.logging.log4j.Logger;
 import org.spongepowered.asm.mixim.MiximEnvironment;
 import org.spongepowered.asm.mixim.MiximEnvironment.Option;
 
-import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
-import com.google.common.io.Files;
-import com.google.common.io.LineProcessor;
 
 /**
  * This adapter is designed to address a problem with mixims when "deobfCompile"
@@ -61,12 +57,15 @@ import com.google.common.io.LineProcessor;
  * customisable via the appropriate environment vars, this fact should be taken
  * into account if a different mapping environment is to be used.</p>
  * 
- * <p>All lookups are straightforward string replacements using <em>all</em>
- * values in the map, this basically means this is probably pretty slow, but I
- * don't care because the number of mappings processed is usually pretty small
- * (few hundred at most) and this is only used in dev where we don't actually
- * care about speed. Some performance is gained (approx 10ms per lookup) by
- * caching the transformed descriptors.</p>
+ * <p>Mappings are read from a {@link SrgTable precompiled table} which is
+ * generated from the SRG file and, if a cache directory is configured, kept
+ * for later launches. Each searge name in a
+ * reference is replaced by looking up the identifiers in the reference in the
+ * table. When the inner refmap is a {@link ReferenceMapper} which has already
+ * been decoded, all of its entries are remapped in one pass when the adapter is
+ * created and lookups are served from the resulting cache. Refmaps which are
+ * served from a binary refmap are remapped lazily as each entry is looked up,
+ * so that the binary refmap does not have to be decoded.</p>
  */
 public final class RemappingReferenceMapper implements IReferenceMapper {
     
@@ -90,7 +89,7 @@ public final class RemappingReferenceMapper implements IReferenceMapper {
      * Loaded srgs, stored as a mapping of filename to mappings. Global cache so
      * that we only need to load each mapping file once.
      */
-    private static final Map<String, Map<String, String>> srgs = new HashMap<String, Map<String,String>>();
+    private static final Map<String, SrgTable> srgs = new HashMap<String, SrgTable>();
     
     /**
      * The "inner" refmap, this is the original refmap specified in the config
@@ -100,11 +99,12 @@ public final class RemappingReferenceMapper implements IReferenceMapper {
     /**
      * The loaded mappings, retrieved from {@link #srgs} by filename
      */
-    private final Map<String, String> mappings;
+    private final SrgTable mappings;
     
     /**
-     * Cache of transformed mappings. Each transformation takes about 10ms so
-     * this saves us time when the same mapping is used repeatedly 
+     * Cache of transformed mappings, populated up front with every entry in
+     * the inner refmap when it has already been decoded, otherwise populated
+     * as entries are looked up
      */
     private final Map<String, Map<String, String>> cache = new HashMap<String, Map<String, String>>();
     
@@ -113,9 +113,33 @@ public final class RemappingReferenceMapper implements IReferenceMapper {
         this.refMap.setContext(RemappingReferenceMapper.getMappingEnv(env));
         
         String resource = RemappingReferenceMapper.getResource(env);
-        this.mappings = RemappingReferenceMapper.loadSrgs(resource);
+        this.mappings = RemappingReferenceMapper.loadSrgs(env, resource);
 
         RemappingReferenceMapper.logger.info("Remapping refMap {} using {}", refMap.getResourceName(), resource);
+        
+        // Binary-backed refmaps are remapped lazily so their tables are not decoded
+        Map<String, Map<String, String>> refMappings = refMap instanceof ReferenceMapper
+                ? ((ReferenceMapper)refMap).getDecodedMappings(refMap.getContext()) : null;
+        if (refMappings != null) {
+            this.remapAll(refMappings);
+        }
+    }
+    
+    /**
+     * Remap every entry of the inner refmap in a single pass
+     * 
+     * @param refMappings mappings from the inner refmap
+     */
+    private void remapAll(Map<String, Map<String, String>> refMappings) {
+        int count = 0;
+        for (Entry<String, Map<String, String>> classMappings : refMappings.entrySet()) {
+            Map<String, String> classCache = this.getCache(classMappings.getKey());
+            for (Entry<String, String> mapping : classMappings.getValue().entrySet()) {
+                classCache.put(mapping.getKey(), this.mappings.remap(mapping.getValue()));
+                count++;
+            }
+        }
+        RemappingReferenceMapper.logger.debug("Remapped {} entries in refMap {}", count, this.refMap.getResourceName());
     }
 
     /* (non-Javadoc)
@@ -169,10 +193,7 @@ public final class RemappingReferenceMapper implements IReferenceMapper {
         Map<String, String> classCache = this.getCache(className);
         String remapped = classCache.get(reference);
         if (remapped == null) {
-            remapped = this.refMap.remap(className, reference);
-            for (Entry<String, String> entry : this.mappings.entrySet()) {
-                remapped = remapped.replace(entry.getKey(), entry.getValue());
-            }
+            remapped = this.mappings.remap(this.refMap.remap(className, reference));
             classCache.put(reference, remapped);
         }
         return remapped;
@@ -202,52 +223,18 @@ public final class RemappingReferenceMapper implements IReferenceMapper {
      * internally so this will only read the file the first time it is called
      * with a particulare filename.
      * 
+     * @param env environment to read the cache directory from
      * @param fileName srg file to read
-     * @return srgs read from file or empty map if the file could not be read
+     * @return srgs read from file or empty table if the file could not be read
      */
-    private static Map<String, String> loadSrgs(String fileName) {
-        if (RemappingReferenceMapper.srgs.containsKey(fileName)) {
-            return RemappingReferenceMapper.srgs.get(fileName);
-        }
-        
-        final Map<String, String> map = new HashMap<String, String>();
-        RemappingReferenceMapper.srgs.put(fileName, map);
-
-        File file = new File(fileName);
-        if (!file.isFile()) {
-            return map;
-        }
-                
-        try {
-            Files.readLines(file, Charsets.UTF_8, new LineProcessor<Object>() {
-                
-                @Override
-                public Object getResult() {
-                    return null;
-                }
-
-                @Override
-                public boolean processLine(String line) throws IOException {
-                    if (Strings.isNullOrEmpty(line) || line.startsWith("#")) {
-                        return true;
-                    }
-                    int fromPos = 0, toPos = 0;
-                    if ((toPos = line.startsWith("MD: ") ? 2 : line.startsWith("FD: ") ? 1 : 0) > 0) {
-                        String[] entries = line.substring(4).split(" ", 4);
-                        map.put(
-                            entries[fromPos].substring(entries[fromPos].lastIndexOf('/') + 1),
-                            entries[toPos].substring(entries[toPos].lastIndexOf('/') + 1)
-                        );
-                    }
-                    return true;
-                }
-            });
-        } catch (IOException ex) {
-            RemappingReferenceMapper.logger.warn("Could not read input SRG file: {}", fileName);
-            RemappingReferenceMapper.logger.catching(ex);
+    private static SrgTable loadSrgs(MiximEnvironment env, String fileName) {
+        SrgTable table = RemappingReferenceMapper.srgs.get(fileName);
+        if (table == null) {
+            String cacheDir = env.getOptionValue(Option.CACHE_DIR);
+            table = SrgTable.load(new File(fileName), Strings.isNullOrEmpty(cacheDir) ? null : new File(cacheDir));
+            RemappingReferenceMapper.srgs.put(fileName, table);
         }
-        
-        return map;
+        return table;
     }
     
     /**
@@ -0,0 +1,414 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixim.refmap;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import com.google.common.io.LineProcessor;
+
+/**
+ * Precompiled srg-to-mcp member name table used by
+ * {@link RemappingReferenceMapper}. Member mappings are parsed from the SRG
+ * file into a compact table and names are looked up by binary search over the
+ * sorted keys. When a cache directory is supplied the table is written there
+ * the first time a particular SRG file is used, and subsequent runs
+ * memory-map it instead. The table records the length, modification time and
+ * checksum of the SRG file it was compiled from. The SRG file is only hashed
+ * if its length or modification time differ, and the table is recompiled if
+ * the checksum differs as well.
+ */
+final class SrgTable {
+    
+    /**
+     * Directory within the cache directory to store compiled tables
+     */
+    private static final String CACHE_DIR = "srg";
+    
+    /**
+     * File magic, "MXSG"
+     */
+    private static final int MAGIC = 0x4D585347;
+    
+    /**
+     * Format version
+     */
+    private static final int VERSION = 2;
+    
+    /**
+     * Header size: magic, version, source length, source modification time,
+     * source checksum, count
+     */
+    private static final int HEADER_SIZE = 32;
+    
+    /**
+     * Logger
+     */
+    private static final Logger logger = LogManager.getLogger("mixim");
+    
+    /**
+     * Backing buffer
+     */
+    private final ByteBuffer buffer;
+    
+    /**
+     * Number of mappings in the table
+     */
+    private final int count;
+    
+    /**
+     * Decoded keys, populated on demand
+     */
+    private final String[] keys;
+    
+    private SrgTable(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(28);
+        this.keys = new String[this.count];
+    }
+    
+    /**
+     * Get the number of mappings in this table
+     */
+    int size() {
+        return this.count;
+    }
+    
+    /**
+     * Get the mapped name for the specified srg name
+     * 
+     * @param name srg name
+     * @return mapped name or null if the name is not mapped
+     */
+    String get(String name) {
+        int low = 0, high = this.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.getKey(mid).compareTo(name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return this.readString(this.buffer.getInt(SrgTable.HEADER_SIZE + (this.count + mid) * 4));
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Replace every srg name in the supplied reference with its mapped name.
+     * Since srg names are unique identifiers the reference is split into
+     * identifier tokens and each token is looked up in the table.
+     * 
+     * @param reference reference to remap
+     * @return remapped reference
+     */
+    String remap(String reference) {
+        if (this.count == 0 || reference == null) {
+            return reference;
+        }
+        StringBuilder remapped = null;
+        int length = reference.length(), last = 0;
+        for (int pos = 0; pos < length;) {
+            if (!Character.isJavaIdentifierPart(reference.charAt(pos))) {
+                pos++;
+                continue;
+            }
+            int start = pos;
+            while (pos < length && Character.isJavaIdentifierPart(reference.charAt(pos))) {
+                pos++;
+            }
+            String mapped = this.get(reference.substring(start, pos));
+            if (mapped != null) {
+                if (remapped == null) {
+                    remapped = new StringBuilder(length + 16);
+                }
+                remapped.append(reference, last, start).append(mapped);
+                last = pos;
+            }
+        }
+        if (remapped == null) {
+            return reference;
+        }
+        return remapped.append(reference, last, length).toString();
+    }
+    
+    private String getKey(int index) {
+        String key = this.keys[index];
+        if (key == null) {
+            key = this.readString(this.buffer.getInt(SrgTable.HEADER_SIZE + index * 4));
+            this.keys[index] = key;
+        }
+        return key;
+    }
+    
+    private String readString(int pos) {
+        int length = this.buffer.getShort(pos) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = this.buffer.duplicate();
+        slice.position(pos + 2);
+        slice.get(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+    
+    /**
+     * Load the member mappings from the specified SRG file. If a cache
+     * directory is supplied the compiled table for the file is used if it
+     * exists and is up to date, and is written there otherwise.
+     * 
+     * @param file SRG file to load
+     * @param cacheDir directory to keep compiled tables in, or null to always
+     *      compile the table in memory
+     * @return loaded table, empty if the file cannot be read
+     */
+    static SrgTable load(File file, File cacheDir) {
+        if (!file.isFile()) {
+            return SrgTable.empty();
+        }
+        
+        long sourceLength = file.length();
+        long sourceModified = file.lastModified();
+        File compiled = cacheDir != null ? SrgTable.getCompiledFile(cacheDir, file) : null;
+        
+        byte[] bytes;
+        try {
+            if (compiled != null) {
+                SrgTable table = SrgTable.map(compiled, file, sourceLength, sourceModified);
+                if (table != null) {
+                    SrgTable.logger.debug("Using compiled SRG table {} for {}", compiled, file);
+                    return table;
+                }
+            }
+            int sourceChecksum = compiled != null ? SrgTable.checksum(file) : 0;
+            bytes = SrgTable.compile(SrgTable.parse(file), sourceLength, sourceModified, sourceChecksum);
+        } catch (IOException ex) {
+            SrgTable.logger.warn("Could not read input SRG file: {}", file);
+            SrgTable.logger.catching(ex);
+            return SrgTable.empty();
+        }
+        
+        if (compiled == null) {
+            return new SrgTable(ByteBuffer.wrap(bytes));
+        }
+        
+        try {
+            compiled.getParentFile().mkdirs();
+            File temp = new File(compiled.getParentFile(), compiled.getName() + ".tmp");
+            Files.write(bytes, temp);
+            if (!temp.renameTo(compiled)) {
+                compiled.delete();
+                temp.renameTo(compiled);
+            }
+        } catch (IOException ex) {
+            SrgTable.logger.debug("Could not write compiled SRG table {}: {}", compiled, ex.getMessage());
+        }
+        
+        return new SrgTable(ByteBuffer.wrap(bytes));
+    }
+
+    private static SrgTable empty() {
+        return new SrgTable(ByteBuffer.wrap(new byte[SrgTable.HEADER_SIZE]));
+    }
+    
+    /**
+     * Memory-map the compiled table if it exists and matches the source file.
+     * The source file is only hashed if its modification time has changed, in
+     * which case the recorded time is updated if the contents are unchanged.
+     */
+    private static SrgTable map(File compiled, File file, long sourceLength, long sourceModified) {
+        if (!compiled.isFile()) {
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(compiled, "r");
+            FileChannel channel = raf.getChannel();
+            if (channel.size() < SrgTable.HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != SrgTable.MAGIC || buffer.getInt(4) != SrgTable.VERSION || buffer.getLong(8) != sourceLength) {
+                return null;
+            }
+            if (buffer.getLong(16) != sourceModified) {
+                if (buffer.getInt(24) != SrgTable.checksum(file)) {
+                    return null;
+                }
+                SrgTable.updateModified(compiled, sourceModified);
+            }
+            return new SrgTable(buffer);
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+    
+    /**
+     * Record a new source modification time in a compiled table whose source
+     * file was touched but not changed, so that it is not hashed again
+     */
+    private static void updateModified(File compiled, long sourceModified) {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(compiled, "rw");
+            raf.seek(16);
+            raf.writeLong(sourceModified);
+        } catch (IOException ex) {
+            SrgTable.logger.debug("Could not update compiled SRG table {}: {}", compiled, ex.getMessage());
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the member mappings from the specified SRG file
+     */
+    private static Map<String, String> parse(File file) throws IOException {
+        final Map<String, String> map = new TreeMap<String, String>();
+        Files.readLines(file, Charsets.UTF_8, new LineProcessor<Object>() {
+            
+            @Override
+            public Object getResult() {
+                return null;
+            }
+
+            @Override
+            public boolean processLine(String line) throws IOException {
+                if (Strings.isNullOrEmpty(line) || line.startsWith("#")) {
+                    return true;
+                }
+                int fromPos = 0, toPos = 0;
+                if ((toPos = line.startsWith("MD: ") ? 2 : line.startsWith("FD: ") ? 1 : 0) > 0) {
+                    String[] entries = line.substring(4).split(" ", 4);
+                    map.put(
+                        entries[fromPos].substring(entries[fromPos].lastIndexOf('/') + 1),
+                        entries[toPos].substring(entries[toPos].lastIndexOf('/') + 1)
+                    );
+                }
+                return true;
+            }
+        });
+        return map;
+    }
+    
+    /**
+     * Encode sorted mappings as a table
+     */
+    private static byte[] compile(Map<String, String> mappings, long sourceLength, long sourceModified, int sourceChecksum)
+            throws IOException {
+        int count = mappings.size();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringData = new DataOutputStream(strings);
+        int base = SrgTable.HEADER_SIZE + count * 8;
+        int[] keyOffsets = new int[count], valueOffsets = new int[count];
+        int index = 0;
+        for (Entry<String, String> mapping : mappings.entrySet()) {
+            keyOffsets[index] = base + stringData.size();
+            SrgTable.writeString(mapping.getKey(), stringData);
+            valueOffsets[index] = base + stringData.size();
+            SrgTable.writeString(mapping.getValue(), stringData);
+            index++;
+        }
+        stringData.flush();
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(base + strings.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SrgTable.MAGIC);
+        out.writeInt(SrgTable.VERSION);
+        out.writeLong(sourceLength);
+        out.writeLong(sourceModified);
+        out.writeInt(sourceChecksum);
+        out.writeInt(count);
+        for (int offset : keyOffsets) {
+            out.writeInt(offset);
+        }
+        for (int offset : valueOffsets) {
+            out.writeInt(offset);
+        }
+        strings.writeTo(out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static File getCompiledFile(File cacheDir, File file) {
+        String path = file.getAbsolutePath();
+        String name = String.format("%s-%08x.bin", file.getName(), Integer.valueOf(path.hashCode()));
+        return new File(new File(cacheDir, SrgTable.CACHE_DIR), name);
+    }
+    
+    private static int checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[8192];
+            for (int read; (read = in.read(buffer)) > 0;) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return (int)crc.getValue();
+    }
+
+}
@@ -42,6 +42,28 @@ public class SourceMap {
     private static final String DEFAULT_STRATUM = "Mixim";
     private static final String NEWLINE = "\n";
     
+    /**
+     * Minimum and padding for the number of lines allocated to each file
+     */
+    private static final int MIN_FILE_SIZE = 500;
+    private static final int FILE_SIZE_PADDING = 50;
+    
+    /**
+     * Largest encoding buffer to keep for reuse
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    
+    /**
+     * Encoding buffer, source maps are encoded once for every target class so
+     * the buffer is reused rather than grown from scratch each time
+     */
+    private static final ThreadLocal<StringBuilder> buffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+    
     /**
      * Defines a source code file within a source map stratum
      */
@@ -122,17 +144,27 @@ public class SourceMap {
             for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
                 AbstractInsnNode node = iter.next();
                 if (node instanceof LineNumberNode) {
-                    ((LineNumberNode)node).line += this.lineOffset - 1;
+                    this.applyOffset((LineNumberNode)node);
                 }
             }
         }
 
+        /**
+         * Offset the supplied line number by the base lineoffset for this
+         * stratum, for callers which are already visiting each instruction
+         * 
+         * @param lineNumber line number node to offset
+         */
+        public void applyOffset(LineNumberNode lineNumber) {
+            lineNumber.line += this.lineOffset - 1;
+        }
+
         void appendFile(StringBuilder sb) {
             if (this.sourceFilePath != null) {
-                sb.append("+ ").append(this.id).append(" ").append(this.sourceFileName).append(SourceMap.NEWLINE);
+                sb.append("+ ").append(this.id).append(' ').append(this.sourceFileName).append(SourceMap.NEWLINE);
                 sb.append(this.sourceFilePath).append(SourceMap.NEWLINE);
             } else {
-                sb.append(this.id).append(" ").append(this.sourceFileName).append(SourceMap.NEWLINE);
+                sb.append(this.id).append(' ').append(this.sourceFileName).append(SourceMap.NEWLINE);
             }
         }
 
@@ -143,8 +175,8 @@ public class SourceMap {
          */
         public void appendLines(StringBuilder sb) {
             sb.append("1#").append(this.id)         // Map line number 1 (onwards) in file number <index>
-              .append(",").append(this.size)        // repeated <file.size> times (eg. lines 1 to <file.size + 1>)
-              .append(":").append(this.lineOffset)  // to output line number lineOffset in the output file
+              .append(',').append(this.size)        // repeated <file.size> times (eg. lines 1 to <file.size + 1>)
+              .append(':').append(this.lineOffset)  // to output line number lineOffset in the output file
               .append(SourceMap.NEWLINE);
         }
         
@@ -180,7 +212,7 @@ public class SourceMap {
         }
 
         void appendTo(StringBuilder sb) {
-            sb.append(Stratum.STRATUM_MARK).append(" ").append(this.name).append(SourceMap.NEWLINE);
+            sb.append(Stratum.STRATUM_MARK).append(' ').append(this.name).append(SourceMap.NEWLINE);
             
             sb.append(Stratum.FILE_MARK).append(SourceMap.NEWLINE);
             for (File file : this.files.values()) {
@@ -245,7 +277,35 @@ public class SourceMap {
      * @return new File
      */
     public File addFile(String stratumName, ClassNode classNode) {
-        return this.addFile(stratumName, classNode.sourceFile, classNode.name + ".java", Bytecode.getMaxLineNumber(classNode, 500, 50));
+        return this.addFile(stratumName, classNode, SourceMap.getSize(classNode));
+    }
+    
+    /**
+     * Add a file to this SourceMap in the default stratum using a size which
+     * was previously computed by {@link #getSize}, this avoids scanning the
+     * class again when the same class is added to many source maps
+     * 
+     * @param classNode class node to read file details from
+     * @param size number of lines to allocate
+     * @return new File
+     */
+    public File addFile(ClassNode classNode, int size) {
+        return this.addFile(this.defaultStratum, classNode, size);
+    }
+    
+    private File addFile(String stratumName, ClassNode classNode, int size) {
+        return this.addFile(stratumName, classNode.sourceFile, classNode.name + ".java", size);
+    }
+    
+    /**
+     * Get the number of lines to allocate to the specified class when it is
+     * added to a source map
+     * 
+     * @param classNode class node to scan
+     * @return number of lines to allocate
+     */
+    public static int getSize(ClassNode classNode) {
+        return Bytecode.getMaxLineNumber(classNode, SourceMap.MIN_FILE_SIZE, SourceMap.FILE_SIZE_PADDING);
     }
     
     /**
@@ -283,9 +343,14 @@ public class SourceMap {
     
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = SourceMap.buffer.get();
+        sb.setLength(0);
         this.appendTo(sb);
-        return sb.toString();
+        String smap = sb.toString();
+        if (sb.capacity() > SourceMap.MAX_RETAINED_BUFFER) {
+            SourceMap.buffer.remove();
+        }
+        return smap;
     }
 
     private void appendTo(StringBuilder sb) {
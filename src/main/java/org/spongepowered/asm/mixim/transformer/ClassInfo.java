@@ -29,6 +29,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +51,7 @@ import org.spongepowered.asm.mixim.Mutable;
 import org.spongepowered.asm.mixim.Shadow;
 import org.spongepowered.asm.mixim.Unique;
 import org.spongepowered.asm.mixim.MiximEnvironment.CompatibilityLevel.LanguageFeature;
+import org.spongepowered.asm.mixim.MiximEnvironment.Option;
 import org.spongepowered.asm.mixim.extensibility.IMiximInfo;
 import org.spongepowered.asm.mixim.gen.Accessor;
 import org.spongepowered.asm.mixim.gen.Invoker;
@@ -430,11 +432,13 @@ public final class ClassInfo {
          */
         public String renameTo(String name) {
             this.currentName = name;
+            this.getOwner().invalidateMembers();
             return name;
         }
         
         public String remapTo(String desc) {
             this.currentDesc = desc;
+            this.getOwner().invalidateMembers();
             return desc;
         }
 
@@ -667,6 +671,35 @@ public final class ClassInfo {
      * information we generate
      */
     private static final Map<String, ClassInfo> cache = new HashMap<String, ClassInfo>();
+    
+    /**
+     * Maximum number of entries in the common superclass memo
+     */
+    private static final int COMMON_SUPERCLASS_MEMO_SIZE = 2048;
+    
+    /**
+     * Recent results of {@link #getCommonSuperClass}, frame computation asks
+     * the same questions about the same pairs of types many times over
+     */
+    private static final Map<String, ClassInfo> commonSuperClassMemo = new LinkedHashMap<String, ClassInfo>(256, 0.75F, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ClassInfo> eldest) {
+            return this.size() > ClassInfo.COMMON_SUPERCLASS_MEMO_SIZE;
+        }
+    };
+    
+    /**
+     * Incremented whenever a change is made which may alter a class hierarchy,
+     * invalidates ancestor tables and the common superclass memo
+     */
+    private static volatile int hierarchyVersion;
+    
+    /**
+     * Hierarchy version the common superclass memo was built against
+     */
+    private static int commonSuperClassMemoVersion;
 
     private static final ClassInfo OBJECT = new ClassInfo();
 
@@ -767,6 +800,50 @@ public final class ClassInfo {
      * Mixims which have been applied this class
      */
     private Set<MiximInfo> appliedMixims;
+    
+    /**
+     * Names of all superclasses of this class, built on demand
+     */
+    private Set<String> superClassNames;
+    
+    /**
+     * Names of all superclasses and interfaces of this class, built on demand
+     */
+    private Set<String> ancestorNames;
+    
+    /**
+     * Hierarchy version the ancestor tables were built against
+     */
+    private int ancestorsVersion = -1;
+    
+    /**
+     * True whilst the ancestor tables are being built, guards against
+     * malformed circular hierarchies
+     */
+    private boolean buildingAncestors;
+    
+    /**
+     * Memoised results of {@link #findInHierarchy}, including negative results
+     */
+    private Map<String, Member> resolvedMembers;
+    
+    /**
+     * Combined hierarchy and member version the resolved members were
+     * memoised against
+     */
+    private long resolvedMembersVersion = -1L;
+    
+    /**
+     * Incremented whenever a member of this class or of a type its resolved
+     * members were looked up through is added, renamed or remapped
+     */
+    private int memberVersion;
+    
+    /**
+     * Subtypes (and mixin targets) whose resolved members were looked up
+     * through this class and must be invalidated along with it
+     */
+    private Set<ClassInfo> memberDependents;
 
     /**
      * Private constructor used to initialise the ClassInfo for {@link Object}
@@ -858,10 +935,12 @@ public final class ClassInfo {
     void addInterface(String iface) {
         this.interfaces.add(iface);
         this.getSignature().addInterface(iface);
+        ClassInfo.hierarchyVersion++;
     }
 
     void addMethod(MethodNode method) {
         this.addMethod(method, true);
+        this.invalidateMembers();
     }
 
     private void addMethod(MethodNode method, boolean injected) {
@@ -880,6 +959,7 @@ public final class ClassInfo {
             throw new IllegalArgumentException("Cannot add target " + this.name + " for " + mixim.getClassName() + " because the target is a mixim");
         }
         this.mixims.add(mixim);
+        ClassInfo.hierarchyVersion++;
     }
     
     /**
@@ -1207,8 +1287,63 @@ public final class ClassInfo {
             return true;
         }
         
+        if (traversal == Traversal.NONE) {
+            return this.getAncestors(includeInterfaces).contains(superClass.name);
+        }
+        
         return this.findSuperClass(superClass.name, traversal, includeInterfaces) != null;
     }
+    
+    /**
+     * Get the names of all superclasses of this class, and optionally all
+     * interfaces, as seen by a {@link Traversal#NONE} superclass search. The
+     * tables are built on first use and rebuilt if the hierarchy changes.
+     * 
+     * @param includeInterfaces True to include interfaces
+     * @return set of ancestor names, must not be modified
+     */
+    private synchronized Set<String> getAncestors(boolean includeInterfaces) {
+        int version = ClassInfo.hierarchyVersion;
+        if (this.ancestorsVersion != version) {
+            if (this.buildingAncestors) {
+                return Collections.<String>emptySet();
+            }
+            this.buildingAncestors = true;
+            try {
+                this.buildAncestors();
+            } finally {
+                this.buildingAncestors = false;
+            }
+            this.ancestorsVersion = version;
+        }
+        return includeInterfaces ? this.ancestorNames : this.superClassNames;
+    }
+
+    private void buildAncestors() {
+        Set<String> superClasses = new HashSet<String>();
+        Set<String> ancestors = new HashSet<String>();
+        
+        ClassInfo superClassInfo = this.getSuperClass();
+        if (superClassInfo != null) {
+            for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                superClasses.add(superTarget.name);
+                superClasses.addAll(superTarget.getAncestors(false));
+                ancestors.add(superTarget.name);
+                ancestors.addAll(superTarget.getAncestors(true));
+            }
+        }
+        
+        for (String ifaceName : this.getInterfaces()) {
+            ancestors.add(ifaceName);
+            ClassInfo iface = ClassInfo.forName(ifaceName);
+            if (iface != null) {
+                ancestors.addAll(iface.getAncestors(true));
+            }
+        }
+        
+        this.superClassNames = superClasses;
+        this.ancestorNames = ancestors;
+    }
 
     /**
      * Search for the specified superclass in this class's hierarchy. If found
@@ -1596,7 +1731,9 @@ public final class ClassInfo {
 
     /**
      * Finds a public or protected member in the hierarchy of this class which
-     * matches the supplied details
+     * matches the supplied details. Results (including failed lookups) are
+     * memoised until a member of this class or one of its supertypes is added
+     * or renamed, or the hierarchy changes.
      *
      * @param name Member name to search
      * @param desc Member descriptor
@@ -1608,6 +1745,73 @@ public final class ClassInfo {
      */
     @SuppressWarnings("unchecked")
     private <M extends Member> M findInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type) {
+        boolean interfaceMethods = type == Type.METHOD
+                && (this.isInterface || MiximEnvironment.getCompatibilityLevel().supports(LanguageFeature.METHODS_IN_INTERFACES));
+        String key = name + desc + ";" + searchType.ordinal() + traversal.ordinal() + type.ordinal() + (interfaceMethods ? "+" : "-") + flags;
+        long version;
+        
+        synchronized (this) {
+            version = ((long)ClassInfo.hierarchyVersion << 32) | (this.memberVersion & 0xFFFFFFFFL);
+            if (this.resolvedMembers != null && this.resolvedMembersVersion == version && this.resolvedMembers.containsKey(key)) {
+                return (M)this.resolvedMembers.get(key);
+            }
+        }
+        
+        M member = this.resolveInHierarchy(name, desc, searchType, traversal, flags, type, interfaceMethods);
+        
+        synchronized (this) {
+            if (version != (((long)ClassInfo.hierarchyVersion << 32) | (this.memberVersion & 0xFFFFFFFFL))) {
+                // Invalidated whilst resolving, don't memoise a stale result
+                return member;
+            }
+            if (this.resolvedMembers == null || this.resolvedMembersVersion != version) {
+                this.resolvedMembers = new HashMap<String, Member>();
+                this.resolvedMembersVersion = version;
+            }
+            this.resolvedMembers.put(key, member);
+        }
+        
+        return member;
+    }
+    
+    /**
+     * Discard memoised hierarchy lookups for this class and for every class
+     * which resolved members through it
+     */
+    private void invalidateMembers() {
+        Set<ClassInfo> dependents;
+        synchronized (this) {
+            this.memberVersion++;
+            this.resolvedMembers = null;
+            dependents = this.memberDependents;
+            this.memberDependents = null;
+        }
+        if (dependents != null) {
+            for (ClassInfo dependent : dependents) {
+                dependent.invalidateMembers();
+            }
+        }
+    }
+    
+    /**
+     * Record that the resolved members of the specified class depend on the
+     * members of this class. Called before the lookup so that a change made
+     * during the lookup still invalidates the dependent.
+     */
+    private synchronized void addMemberDependent(ClassInfo dependent) {
+        if (this.memberDependents == null) {
+            this.memberDependents = new HashSet<ClassInfo>();
+        }
+        this.memberDependents.add(dependent);
+    }
+
+    /**
+     * Uncached lookup for {@link #findInHierarchy}, recursive lookups in
+     * supertypes go via the memo of each supertype
+     */
+    @SuppressWarnings("unchecked")
+    private <M extends Member> M resolveInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type,
+            boolean interfaceMethods) {
         if (searchType == SearchType.ALL_CLASSES) {
             M member = this.findMember(name, desc, flags, type);
             if (member != null) {
@@ -1616,7 +1820,9 @@ public final class ClassInfo {
 
             if (traversal.canTraverse()) {
                 for (MiximInfo mixim : this.mixims) {
-                    M miximMember = mixim.getClassInfo().findMember(name, desc, flags, type);
+                    ClassInfo miximInfo = mixim.getClassInfo();
+                    miximInfo.addMemberDependent(this);
+                    M miximMember = miximInfo.findMember(name, desc, flags, type);
                     if (miximMember != null) {
                         return this.cloneMember(miximMember);
                     }
@@ -1627,6 +1833,7 @@ public final class ClassInfo {
         ClassInfo superClassInfo = this.getSuperClass();
         if (superClassInfo != null) {
             for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                superTarget.addMemberDependent(this);
                 M member = superTarget.findInHierarchy(name, desc, SearchType.ALL_CLASSES, traversal.next(), flags & ~ClassInfo.INCLUDE_PRIVATE,
                         type);
                 if (member != null) {
@@ -1635,7 +1842,7 @@ public final class ClassInfo {
             }
         }
         
-        if (type == Type.METHOD && (this.isInterface || MiximEnvironment.getCompatibilityLevel().supports(LanguageFeature.METHODS_IN_INTERFACES))) {
+        if (interfaceMethods) {
             for (String implemented : this.interfaces) {
                 ClassInfo iface = ClassInfo.forName(implemented);
                 if (iface == null) {
@@ -1643,6 +1850,7 @@ public final class ClassInfo {
                     continue;
 //                    throw new RuntimeException(new ClassNotFoundException(implemented));
                 }
+                iface.addMemberDependent(this);
                 M member = iface.findInHierarchy(name, desc, SearchType.ALL_CLASSES, traversal.next(), flags & ~ClassInfo.INCLUDE_PRIVATE, type);
                 if (member != null) {
                     return  this.isInterface ? member : (M)new InterfaceMethod(member);
@@ -1819,6 +2027,11 @@ public final class ClassInfo {
     static ClassInfo fromClassNode(ClassNode classNode) {
         ClassInfo info = ClassInfo.cache.get(classNode.name);
         if (info == null) {
+            if (ClassInfo.cache.containsKey(classNode.name)) {
+                // Replacing a failed lookup, hierarchies which include this
+                // class may now resolve differently
+                ClassInfo.hierarchyVersion++;
+            }
             info = new ClassInfo(classNode);
             ClassInfo.cache.put(classNode.name, info);
         }
@@ -1840,7 +2053,8 @@ public final class ClassInfo {
         ClassInfo info = ClassInfo.cache.get(className);
         if (info == null) {
             try {
-                ClassNode classNode = MiximService.getService().getBytecodeProvider().getClassNode(className);
+                boolean runTransformers = !MiximEnvironment.getCurrentEnvironment().getOption(Option.LIGHTWEIGHT_METADATA);
+                ClassNode classNode = MiximService.getService().getBytecodeProvider().getClassNode(className, runTransformers);
                 info = new ClassInfo(classNode);
             } catch (Exception ex) {
                 ClassInfo.logger.catching(Level.TRACE, ex);
@@ -2024,6 +2238,29 @@ public final class ClassInfo {
     }
 
     private static ClassInfo getCommonSuperClass(ClassInfo type1, ClassInfo type2, boolean includeInterfaces) {
+        String key = type1.name + (includeInterfaces ? ";+" : ";") + type2.name;
+        synchronized (ClassInfo.commonSuperClassMemo) {
+            if (ClassInfo.commonSuperClassMemoVersion != ClassInfo.hierarchyVersion) {
+                ClassInfo.commonSuperClassMemo.clear();
+                ClassInfo.commonSuperClassMemoVersion = ClassInfo.hierarchyVersion;
+            }
+            ClassInfo commonSuperClass = ClassInfo.commonSuperClassMemo.get(key);
+            if (commonSuperClass != null) {
+                return commonSuperClass;
+            }
+        }
+        
+        int version = ClassInfo.hierarchyVersion;
+        ClassInfo commonSuperClass = ClassInfo.findCommonSuperClass(type1, type2, includeInterfaces);
+        synchronized (ClassInfo.commonSuperClassMemo) {
+            if (ClassInfo.commonSuperClassMemoVersion == version) {
+                ClassInfo.commonSuperClassMemo.put(key, commonSuperClass);
+            }
+        }
+        return commonSuperClass;
+    }
+
+    private static ClassInfo findCommonSuperClass(ClassInfo type1, ClassInfo type2, boolean includeInterfaces) {
         if (type1.hasSuperClass(type2, Traversal.NONE, includeInterfaces)) {
             return type2;
         } else if (type2.hasSuperClass(type1, Traversal.NONE, includeInterfaces)) {
@@ -247,6 +247,11 @@ class MixinApplicatorStandard {
      * Audit trail (if available); 
      */
     protected final IMixinAuditTrail auditTrail;
+    
+    /**
+     * Structured audit stream (if enabled)
+     */
+    protected final MixinAuditStream auditStream;
 
     /**
      * Activity tracker
@@ -272,6 +277,7 @@ class MixinApplicatorStandard {
                 && MixinEnvironment.getCurrentEnvironment().getOption(Option.DEBUG_EXPORT_DECOMPILE_MERGESIGNATURES);
         
         this.auditTrail = MixinService.getService().getAuditTrail();
+        this.auditStream = MixinAuditStream.get();
     }
     
     /**
@@ -288,6 +294,9 @@ class MixinApplicatorStandard {
                 if (this.auditTrail != null) {
                     this.auditTrail.onApply(this.targetName, mixin.toString());
                 }
+                if (this.auditStream != null) {
+                    this.auditStream.onApply(this.targetName, mixin.getClassName());
+                }
             } catch (InvalidMixinException ex) {
                 if (mixin.isRequired()) {
                     throw ex;
@@ -346,6 +355,10 @@ class MixinApplicatorStandard {
                 }
             }
             activity.end();
+            
+            for (MixinTargetContext context : mixinContexts) {
+                this.context.getClassInfo().addAppliedMixin(context.getInfo());
+            }
         } catch (InvalidMixinException ex) {
             ex.prepend(this.activities);
             throw ex;
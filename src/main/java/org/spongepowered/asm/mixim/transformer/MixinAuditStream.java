@@ -0,0 +1,478 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.service.IMixinAuditTrail;
+import org.spongepowered.asm.util.Constants;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+
+/**
+ * Structured, machine-readable record of what the mixin processor did during
+ * this run: configs selected, mixins prepared, mixins skipped by config
+ * plugins, mixins applied, injector callback counts and generated classes.
+ * Unlike the service-provided {@link IMixinAuditTrail audit trail}, the stream
+ * does not depend on the platform and is written as the events happen, so the
+ * streams from two runs can be compared directly.
+ * 
+ * <p>Events are queued by the calling thread and written by a background
+ * thread, either as newline-delimited JSON or as a compact binary stream (see
+ * {@link BinarySink}). The stream is only created if enabled via
+ * {@link Option#DEBUG_AUDIT_STREAM}, callers obtain it via {@link #get} and
+ * must only build event arguments once they have a non-null stream.</p>
+ */
+final class MixinAuditStream implements Runnable {
+    
+    /**
+     * Event types, the declared order is the type id used by the binary
+     * format so new types must only be added at the end
+     */
+    enum EventType {
+        
+        /**
+         * A config was selected: config, phase
+         */
+        SELECT("select", null, "config", "phase"),
+        
+        /**
+         * A mixin was prepared: config, mixin, target count
+         */
+        PREPARE("prepare", "targets", "config", "mixin"),
+        
+        /**
+         * A config plugin vetoed a mixin target: config, mixin, target
+         */
+        SKIP("skip", null, "config", "mixin", "target"),
+        
+        /**
+         * A mixin was applied: target, mixin
+         */
+        APPLY("apply", null, "target", "mixin"),
+        
+        /**
+         * An injector was applied: target, injector, callback count
+         */
+        INJECT("inject", "count", "target", "injector"),
+        
+        /**
+         * A class was generated: class, generator
+         */
+        GENERATE("generate", null, "class", "generator"),
+        
+        /**
+         * A class was post-processed: class
+         */
+        POST_PROCESS("postProcess", null, "class");
+        
+        final String key;
+        
+        final String countKey;
+        
+        final String[] fieldKeys;
+        
+        private EventType(String key, String countKey, String... fieldKeys) {
+            this.key = key;
+            this.countKey = countKey;
+            this.fieldKeys = fieldKeys;
+        }
+        
+    }
+    
+    /**
+     * Queued event
+     */
+    static final class Event {
+        
+        final EventType type;
+        
+        final String[] fields;
+        
+        final int count;
+        
+        Event(EventType type, int count, String... fields) {
+            this.type = type;
+            this.count = count;
+            this.fields = fields;
+        }
+        
+    }
+    
+    /**
+     * Output format for the stream
+     */
+    interface ISink extends Closeable {
+        
+        public abstract void write(Event event) throws IOException;
+        
+        public abstract void flush() throws IOException;
+        
+    }
+    
+    /**
+     * Writes one JSON object per line, eg.
+     * 
+     * <blockquote><pre>{"event":"apply","target":"a.b.C","mixin":"x.y.MixinC"}
+     * </pre></blockquote>
+     */
+    static final class JsonSink implements ISink {
+        
+        private final Writer writer;
+        
+        JsonSink(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, Charsets.UTF_8));
+        }
+        
+        @Override
+        public void write(Event event) throws IOException {
+            this.writer.write("{\"event\":\"");
+            this.writer.write(event.type.key);
+            this.writer.write('"');
+            for (int i = 0; i < event.type.fieldKeys.length; i++) {
+                this.writer.write(",\"");
+                this.writer.write(event.type.fieldKeys[i]);
+                this.writer.write("\":");
+                this.writeString(event.fields[i]);
+            }
+            if (event.type.countKey != null) {
+                this.writer.write(",\"");
+                this.writer.write(event.type.countKey);
+                this.writer.write("\":");
+                this.writer.write(Integer.toString(event.count));
+            }
+            this.writer.write("}\n");
+        }
+        
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                this.writer.write("null");
+                return;
+            }
+            this.writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    this.writer.write('\\');
+                    this.writer.write(c);
+                } else if (c < 0x20) {
+                    this.writer.write(String.format("\\u%04x", (int)c));
+                } else {
+                    this.writer.write(c);
+                }
+            }
+            this.writer.write('"');
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.writer.close();
+        }
+        
+    }
+    
+    /**
+     * Compact binary stream. The stream begins with the magic number and
+     * format version (both ints), followed by the events. Each event is the
+     * event type id (byte), one string reference per field and the count as a
+     * varint if the event type has a count. A string reference is a varint
+     * holding the string id plus one, or zero for null. Strings are numbered
+     * in order of first appearance, and the first reference to each string is
+     * immediately followed by the string itself in modified UTF-8 (as written
+     * by {@link DataOutputStream#writeUTF}).
+     */
+    static final class BinarySink implements ISink {
+        
+        static final int MAGIC = 0x4D584153; // MXAS
+        
+        static final int VERSION = 1;
+        
+        private final DataOutputStream out;
+        
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        
+        BinarySink(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(BinarySink.MAGIC);
+            this.out.writeInt(BinarySink.VERSION);
+        }
+        
+        @Override
+        public void write(Event event) throws IOException {
+            this.out.writeByte(event.type.ordinal());
+            for (String field : event.fields) {
+                this.writeString(field);
+            }
+            if (event.type.countKey != null) {
+                this.writeVarInt(event.count);
+            }
+        }
+        
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                this.writeVarInt(0);
+                return;
+            }
+            Integer id = this.strings.get(value);
+            if (id != null) {
+                this.writeVarInt(id.intValue() + 1);
+                return;
+            }
+            int newId = this.strings.size();
+            this.strings.put(value, Integer.valueOf(newId));
+            this.writeVarInt(newId + 1);
+            this.out.writeUTF(value);
+        }
+        
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.out.writeByte(value);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+        
+    }
+    
+    /**
+     * Name of the default output file, the extension is determined by the
+     * format
+     */
+    private static final String DEFAULT_FILE_NAME = "audit/mixin-audit";
+    
+    /**
+     * Time to wait for queued events to be written at shutdown
+     */
+    private static final long CLOSE_TIMEOUT_MS = 5000L;
+    
+    /**
+     * Marker which tells the writer thread to stop
+     */
+    private static final Event CLOSE = new Event(null, 0);
+    
+    private static final Logger logger = LogManager.getLogger("mixin");
+    
+    /**
+     * Active stream, null if disabled
+     */
+    private static volatile MixinAuditStream instance;
+    
+    /**
+     * Whether the option has been checked
+     */
+    private static volatile boolean initialised;
+    
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<Event>();
+    
+    private final ISink sink;
+    
+    private final File file;
+    
+    private final Thread thread;
+    
+    private volatile boolean open = true;
+    
+    private MixinAuditStream(ISink sink, File file) {
+        this.sink = sink;
+        this.file = file;
+        this.thread = new Thread(this, "Mixin Audit Stream");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread("Mixin Audit Stream Shutdown") {
+            @Override
+            public void run() {
+                MixinAuditStream.this.close();
+            }
+        });
+    }
+    
+    /**
+     * Get the audit stream, if enabled
+     * 
+     * @return the audit stream or null if the stream is disabled or could
+     *      not be opened
+     */
+    static MixinAuditStream get() {
+        if (!MixinAuditStream.initialised) {
+            MixinAuditStream.init();
+        }
+        return MixinAuditStream.instance;
+    }
+    
+    private static synchronized void init() {
+        if (MixinAuditStream.initialised) {
+            return;
+        }
+        try {
+            MixinEnvironment environment = MixinEnvironment.getCurrentEnvironment();
+            if (environment.getOption(Option.DEBUG_AUDIT_STREAM)) {
+                MixinAuditStream.instance = MixinAuditStream.open(environment);
+            }
+        } finally {
+            MixinAuditStream.initialised = true;
+        }
+    }
+    
+    private static MixinAuditStream open(MixinEnvironment environment) {
+        boolean binary = "binary".equals(Strings.nullToEmpty(environment.getOptionValue(Option.DEBUG_AUDIT_STREAM_FORMAT)).toLowerCase(Locale.ROOT));
+        String fileName = environment.getOptionValue(Option.DEBUG_AUDIT_STREAM_FILE);
+        File file = Strings.isNullOrEmpty(fileName)
+                ? new File(Constants.DEBUG_OUTPUT_DIR, MixinAuditStream.DEFAULT_FILE_NAME + (binary ? ".bin" : ".ndjson"))
+                : new File(fileName);
+        
+        OutputStream out = null;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            out = new FileOutputStream(file);
+            ISink sink = binary ? new BinarySink(out) : new JsonSink(out);
+            MixinAuditStream.logger.info("Writing mixin audit stream to {}", file.getAbsolutePath());
+            return new MixinAuditStream(sink, file);
+        } catch (IOException ex) {
+            MixinAuditStream.logger.warn("Could not open mixin audit stream {}: {}", file, ex.getMessage());
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex1) {
+                    // ignore
+                }
+            }
+            return null;
+        }
+    }
+    
+    void onSelect(String config, String phase) {
+        this.offer(new Event(EventType.SELECT, 0, config, phase));
+    }
+    
+    void onPrepare(String config, String mixin, int targets) {
+        this.offer(new Event(EventType.PREPARE, targets, config, mixin));
+    }
+    
+    void onSkip(String config, String mixin, String target) {
+        this.offer(new Event(EventType.SKIP, 0, config, mixin, target));
+    }
+    
+    void onApply(String target, String mixin) {
+        this.offer(new Event(EventType.APPLY, 0, target, mixin));
+    }
+    
+    void onInject(String target, String injector, int count) {
+        this.offer(new Event(EventType.INJECT, count, target, injector));
+    }
+    
+    void onGenerate(String className, String generator) {
+        this.offer(new Event(EventType.GENERATE, 0, className, generator));
+    }
+    
+    void onPostProcess(String className) {
+        this.offer(new Event(EventType.POST_PROCESS, 0, className));
+    }
+    
+    private void offer(Event event) {
+        if (this.open) {
+            this.queue.offer(event);
+        }
+    }
+    
+    @Override
+    public void run() {
+        try {
+            for (Event event; (event = this.queue.take()) != MixinAuditStream.CLOSE;) {
+                this.sink.write(event);
+                if (this.queue.isEmpty()) {
+                    this.sink.flush();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // closing
+        } catch (IOException ex) {
+            MixinAuditStream.logger.warn("Error writing mixin audit stream {}, further events will be discarded: {}", this.file,
+                    ex.getMessage());
+        } finally {
+            this.open = false;
+            this.queue.clear();
+            try {
+                this.sink.close();
+            } catch (IOException ex) {
+                // ignore
+            }
+        }
+    }
+    
+    /**
+     * Stop accepting events and wait for queued events to be written
+     */
+    void close() {
+        if (!this.open) {
+            return;
+        }
+        this.open = false;
+        this.queue.offer(MixinAuditStream.CLOSE);
+        try {
+            this.thread.join(MixinAuditStream.CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+}
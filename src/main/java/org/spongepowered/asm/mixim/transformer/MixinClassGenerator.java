@@ -61,6 +61,11 @@ public class MixinClassGenerator {
      * Audit trail (if available); 
      */
     private final IMixinAuditTrail auditTrail;
+    
+    /**
+     * Structured audit stream (if enabled)
+     */
+    private final MixinAuditStream auditStream;
 
     /**
      * ctor 
@@ -69,6 +74,7 @@ public class MixinClassGenerator {
         this.extensions = extensions;
         this.profiler = MixinEnvironment.getProfiler();
         this.auditTrail = MixinService.getService().getAuditTrail();
+        this.auditStream = MixinAuditStream.get();
     }
 
     synchronized boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
@@ -85,6 +91,9 @@ public class MixinClassGenerator {
                 if (this.auditTrail != null) {
                     this.auditTrail.onGenerate(name, generator.getName());
                 }
+                if (this.auditStream != null) {
+                    this.auditStream.onGenerate(name, generator.getName());
+                }
                 this.extensions.export(environment, name.replace('.', '/'), false, classNode);
                 return true;
             }
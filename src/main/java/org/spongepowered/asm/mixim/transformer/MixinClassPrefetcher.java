@@ -0,0 +1,161 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.service.IMixinService;
+
+/**
+ * Fetches and parses mixin classes on worker threads ahead of the configs
+ * which consume them, so that reading, inflating and parsing mixin bytecode
+ * overlaps with the preparation of mixins which have already been loaded.
+ * Classes are submitted in the order they will be consumed and each prefetched
+ * class node is handed out at most once.
+ * 
+ * <p>Prefetching is a best-effort optimisation, any failure on a worker thread
+ * is discarded and the consumer simply loads the class itself, so that errors
+ * are reported exactly as they would be without prefetching.</p>
+ */
+final class MixinClassPrefetcher {
+    
+    /**
+     * Maximum number of worker threads
+     */
+    private static final int MAX_THREADS = 4;
+
+    private static final Logger logger = LogManager.getLogger("mixin");
+    
+    private final IMixinService service;
+    
+    private final ExecutorService executor;
+    
+    /**
+     * Outstanding prefetches keyed by fully-qualified class name, only
+     * accessed from the preparing thread
+     */
+    private final Map<String, Future<ClassNode>> pending = new HashMap<String, Future<ClassNode>>();
+    
+    private int hits;
+    
+    private MixinClassPrefetcher(IMixinService service, int threads) {
+        this.service = service;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Mixin Prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * Begin prefetching the specified mixin classes
+     * 
+     * @param service service to fetch bytecode from
+     * @param mixinClasses fully-qualified mixin class names in the order they
+     *      will be consumed
+     * @return new prefetcher, or null if there is nothing worth prefetching
+     */
+    static MixinClassPrefetcher start(IMixinService service, List<String> mixinClasses) {
+        int threads = Math.min(MixinClassPrefetcher.MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1);
+        if (threads < 1 || mixinClasses.size() < 2) {
+            return null;
+        }
+        
+        MixinClassPrefetcher prefetcher = new MixinClassPrefetcher(service, threads);
+        for (String mixinClass : mixinClasses) {
+            prefetcher.submit(mixinClass);
+        }
+        return prefetcher;
+    }
+    
+    private void submit(final String mixinClass) {
+        if (this.pending.containsKey(mixinClass)) {
+            return;
+        }
+        this.pending.put(mixinClass, this.executor.submit(new Callable<ClassNode>() {
+            @Override
+            public ClassNode call() throws Exception {
+                return MixinClassPrefetcher.this.service.getBytecodeProvider().getClassNode(mixinClass, true);
+            }
+        }));
+    }
+    
+    /**
+     * Take the prefetched class node for the specified mixin, waiting for the
+     * fetch to complete if necessary
+     * 
+     * @param mixinClass fully-qualified mixin class name
+     * @return prefetched class node, or null if the class was not prefetched
+     *      or could not be fetched, in which case the caller should load the
+     *      class itself
+     */
+    ClassNode take(String mixinClass) {
+        Future<ClassNode> future = this.pending.remove(mixinClass);
+        if (future == null) {
+            return null;
+        }
+        
+        try {
+            ClassNode classNode = future.get();
+            if (classNode != null) {
+                this.hits++;
+            }
+            return classNode;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // Fall back to loading the class on the calling thread
+        }
+        return null;
+    }
+    
+    /**
+     * Cancel any outstanding prefetches and stop the worker threads
+     */
+    void shutdown() {
+        for (Iterator<Future<ClassNode>> iter = this.pending.values().iterator(); iter.hasNext();) {
+            iter.next().cancel(false);
+            iter.remove();
+        }
+        this.executor.shutdown();
+        MixinClassPrefetcher.logger.debug("Mixin prefetch supplied {} classes", this.hits);
+    }
+
+}
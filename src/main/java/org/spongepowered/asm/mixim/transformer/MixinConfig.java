@@ -24,6 +24,7 @@
  */
 package org.spongepowered.asm.mixin.transformer;
 
+import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
@@ -53,11 +54,15 @@ import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.service.IMixinService;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.VersionNumber;
+import org.spongepowered.asm.util.perf.Profiler.Section;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -140,6 +145,23 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
      * with equivalent priority
      */
     private static int configOrder = 0;
+    
+    /**
+     * Gson instance shared by all configs, Gson is thread-safe and caches type
+     * adapters so there is no need to create one per config
+     */
+    private static final Gson gson = new Gson();
+    
+    /**
+     * Parsed config documents keyed by resource name, configs are immutable
+     * once read so a config which is requested again (eg. as the parent of
+     * another config or via a separate handle) does not need to be read and
+     * parsed again. Entries are evicted once the config is selected, since the
+     * document is not needed after that, and the whole cache is cleared when
+     * config selection finishes so that documents for configs which are never
+     * selected are not retained.
+     */
+    private static final Map<String, JsonElement> parseCache = new HashMap<String, JsonElement>();
 
     /**
      * Global list of mixin classes, so we can skip any duplicates
@@ -349,6 +371,24 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
      * Track whether this mixin has been evaluated for selection yet 
      */
     private transient boolean visited = false;
+    
+    /**
+     * Results of superclass checks between mixin superclasses and targets,
+     * only populated whilst the mixins in this config are being validated
+     */
+    private transient Map<String, Boolean> superClassChecks;
+    
+    /**
+     * Prefetcher supplying mixin classes whilst this config is being prepared,
+     * null if prefetching is not active
+     */
+    private transient MixinClassPrefetcher prefetcher;
+    
+    /**
+     * True once the deferred part of initialisation has been run, see
+     * {@link #onSelect}
+     */
+    private transient boolean selected = false;
 
     /**
      * Spawn via GSON, no public ctor for you 
@@ -459,7 +499,6 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         
         this.initialised = true;
         this.initCompatibilityLevel();
-        this.initInjectionPoints();
         return this.checkVersion();
     }
     
@@ -515,11 +554,17 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     }
     
     private void initInjectionPoints() {
-        if (this.injectorOptions.injectionPoints == null) {
-            return;
+        // Injection points declared by parent configs are registered along
+        // with our own, since the parent may never be selected in its own
+        // right
+        Set<String> injectionPoints = new LinkedHashSet<String>();
+        for (MixinConfig config = this; config != null; config = config.parent) {
+            if (config.injectorOptions != null && config.injectorOptions.injectionPoints != null) {
+                injectionPoints.addAll(config.injectorOptions.injectionPoints);
+            }
         }
         
-        for (String injectionPointClassName : this.injectorOptions.injectionPoints) {
+        for (String injectionPointClassName : injectionPoints) {
             this.initInjectionPoint(injectionPointClassName);
         }
     }
@@ -590,9 +635,20 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     }
 
     /**
-     * Initialise the config once it's selected
+     * Initialise the config once it's selected. Loading a config only reads
+     * the information needed to decide whether it should be selected, the
+     * plugin, refmap and custom injection points are not loaded until the
+     * config is actually selected
      */
     void onSelect() {
+        if (this.selected) {
+            return;
+        }
+        this.selected = true;
+        MixinConfig.evictParsed(this.name);
+        
+        this.initInjectionPoints();
+        
         this.plugin = new PluginHandle(this, this.service, this.pluginClassName);
         this.plugin.onLoad(this.mixinPackage);
 
@@ -660,12 +716,72 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
     
+    /**
+     * Get the fully-qualified names of the mixin classes which will be loaded
+     * by {@link #prepare} for the current side, in the order they will be
+     * loaded
+     */
+    List<String> getPreparableMixinClasses() {
+        List<String> mixinClasses = new ArrayList<String>();
+        if (this.prepared) {
+            return mixinClasses;
+        }
+        
+        this.addPreparableMixinClasses(mixinClasses, this.mixinClasses);
+        switch (this.env.getSide()) {
+            case CLIENT:
+                this.addPreparableMixinClasses(mixinClasses, this.mixinClassesClient);
+                break;
+            case SERVER:
+                this.addPreparableMixinClasses(mixinClasses, this.mixinClassesServer);
+                break;
+            default:
+                break;
+        }
+        return mixinClasses;
+    }
+    
+    private void addPreparableMixinClasses(List<String> target, List<String> mixinClasses) {
+        if (mixinClasses == null) {
+            return;
+        }
+        for (String mixinClass : mixinClasses) {
+            if (mixinClass != null && !MixinConfig.globalMixinList.contains(this.mixinPackage + mixinClass)) {
+                target.add(this.mixinPackage + mixinClass);
+            }
+        }
+    }
+    
+    void setPrefetcher(MixinClassPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+    
+    /**
+     * Get a prefetched class node for the specified mixin class, if available
+     * 
+     * @param mixinClassName fully-qualified mixin class name
+     * @return prefetched class node or null if the class should be loaded by
+     *      the caller
+     */
+    ClassNode getPrefetchedClass(String mixinClassName) {
+        return this.prefetcher != null ? this.prefetcher.take(mixinClassName) : null;
+    }
+    
     void postInitialise() {
         if (this.plugin != null) {
             List<String> pluginMixins = this.plugin.getMixins();
             this.prepareMixins(pluginMixins, true);
         }
         
+        this.superClassChecks = new HashMap<String, Boolean>();
+        try {
+            this.validateMixins();
+        } finally {
+            this.superClassChecks = null;
+        }
+    }
+    
+    private void validateMixins() {
         for (Iterator<MixinInfo> iter = this.mixins.iterator(); iter.hasNext();) {
             MixinInfo mixin = iter.next();
             try {
@@ -685,6 +801,29 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
 
+    /**
+     * Check whether the specified class appears in the hierarchy of the target
+     * class (including superclasses of mixins applied to the hierarchy),
+     * results are shared between mixins whilst this config is validated
+     * 
+     * @param targetClass target class
+     * @param superName superclass to search for
+     * @return true if the superclass was found in the target hierarchy
+     */
+    boolean hasSuperClass(ClassInfo targetClass, String superName) {
+        if (this.superClassChecks == null) {
+            return targetClass.hasSuperClass(superName, ClassInfo.Traversal.SUPER);
+        }
+        
+        String key = targetClass.getName() + ";" + superName;
+        Boolean result = this.superClassChecks.get(key);
+        if (result == null) {
+            result = Boolean.valueOf(targetClass.hasSuperClass(superName, ClassInfo.Traversal.SUPER));
+            this.superClassChecks.put(key, result);
+        }
+        return result.booleanValue();
+    }
+
     private void removeMixin(MixinInfo remove) {
         for (List<MixinInfo> mixinsFor : this.mixinMapping.values()) {
             for (Iterator<MixinInfo> iter = mixinsFor.iterator(); iter.hasNext();) {
@@ -695,6 +834,34 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
 
+    /**
+     * If the plugin makes decisions in bulk, pass it the targets of all pending
+     * mixins which are waiting for a decision and then filter their targets
+     */
+    private void applyPluginDecisions() {
+        if (!this.plugin.isBulk()) {
+            return;
+        }
+        
+        Map<String, Set<String>> mixinTargets = new LinkedHashMap<String, Set<String>>();
+        for (MixinInfo mixin : this.pendingMixins) {
+            if (mixin.isPluginDeferred()) {
+                mixinTargets.put(mixin.getClassName(), mixin.getDeclaredTargetNames());
+            }
+        }
+        
+        Section pluginTimer = MixinEnvironment.getProfiler().begin("plugin");
+        try {
+            this.plugin.shouldApplyMixins(mixinTargets);
+        } finally {
+            pluginTimer.end();
+        }
+        
+        for (MixinInfo mixin : this.pendingMixins) {
+            mixin.applyPluginDecisions();
+        }
+    }
+
     private void prepareMixins(List<String> mixinClasses, boolean ignorePlugin) {
         if (mixinClasses == null) {
             return;
@@ -725,6 +892,8 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
             }
         }
         
+        this.applyPluginDecisions();
+        
         for (MixinInfo mixin : this.pendingMixins) {
             try {
                 mixin.parseTargets();
@@ -1077,11 +1246,7 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     static Config create(String configFile, MixinEnvironment outer) {
         try {
             IMixinService service = MixinService.getService();
-            InputStream resource = service.getResourceAsStream(configFile);
-            if (resource == null) {
-                throw new IllegalArgumentException(String.format("The specified resource '%s' was invalid or could not be read", configFile));
-            }
-            MixinConfig config = new Gson().fromJson(new InputStreamReader(resource), MixinConfig.class);
+            MixinConfig config = MixinConfig.gson.fromJson(MixinConfig.parse(service, configFile), MixinConfig.class);
             if (config.onLoad(service, configFile, outer)) {
                 return config.getHandle();
             }
@@ -1093,6 +1258,55 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
 
+    /**
+     * Read the config document from the specified resource, or fetch it from
+     * the parse cache if it was already read
+     */
+    private static JsonElement parse(IMixinService service, String configFile) throws Exception {
+        synchronized (MixinConfig.parseCache) {
+            JsonElement document = MixinConfig.parseCache.get(configFile);
+            if (document != null) {
+                return document;
+            }
+        }
+        
+        InputStream resource = service.getResourceAsStream(configFile);
+        if (resource == null) {
+            throw new IllegalArgumentException(String.format("The specified resource '%s' was invalid or could not be read", configFile));
+        }
+        
+        BufferedReader reader = new BufferedReader(new InputStreamReader(resource, Charsets.UTF_8));
+        JsonElement document;
+        try {
+            document = new JsonParser().parse(reader);
+        } finally {
+            reader.close();
+        }
+        
+        synchronized (MixinConfig.parseCache) {
+            MixinConfig.parseCache.put(configFile, document);
+        }
+        return document;
+    }
+
+    /**
+     * Remove the cached document for the specified config
+     */
+    private static void evictParsed(String configFile) {
+        synchronized (MixinConfig.parseCache) {
+            MixinConfig.parseCache.remove(configFile);
+        }
+    }
+
+    /**
+     * Remove all cached documents, called once config selection is complete
+     */
+    static void clearParseCache() {
+        synchronized (MixinConfig.parseCache) {
+            MixinConfig.parseCache.clear();
+        }
+    }
+
     private static int getCollectionSize(Collection<?>... collections) {
         int total = 0;
         for (Collection<?> collection : collections) {
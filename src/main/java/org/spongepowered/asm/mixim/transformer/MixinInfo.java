@@ -29,8 +29,12 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.logging.log4j.Level;
@@ -62,6 +66,7 @@ import org.spongepowered.asm.mixin.extensibility.IMixinConfig;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.injection.Surrogate;
 import org.spongepowered.asm.mixin.injection.struct.InjectionInfo;
+import org.spongepowered.asm.mixin.struct.SourceMap;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Method;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinReloadException;
@@ -116,6 +121,24 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      */
     class MixinMethodNode extends MethodNodeEx {
         
+        /**
+         * Visible annotations at the time {@link #annotationIndex} was built,
+         * used to detect changes to the annotation list
+         */
+        private AnnotationNode[] indexedAnnotations;
+        
+        /**
+         * Visible annotations keyed by descriptor
+         */
+        private Map<String, AnnotationNode> annotationIndex;
+        
+        /**
+         * Injector annotation, valid while {@link #injectorResolved} is true
+         */
+        private AnnotationNode injectorAnnotation;
+        
+        private boolean injectorResolved;
+        
         public MixinMethodNode(int access, String name, String desc, String signature, String[] exceptions) {
             super(access, name, desc, signature, exceptions, MixinInfo.this);
         }
@@ -144,11 +167,59 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         }
 
         public AnnotationNode getVisibleAnnotation(Class<? extends Annotation> annotationClass) {
-            return Annotations.getVisible(this, annotationClass);
+            return this.getAnnotationIndex().get(Annotations.getDesc(annotationClass));
         }
 
         public AnnotationNode getInjectorAnnotation() {
-            return InjectionInfo.getInjectorAnnotation(MixinInfo.this, this);
+            this.getAnnotationIndex();
+            if (!this.injectorResolved) {
+                this.injectorAnnotation = InjectionInfo.getInjectorAnnotation(MixinInfo.this, this);
+                this.injectorResolved = true;
+            }
+            return this.injectorAnnotation;
+        }
+        
+        /**
+         * Get the index of visible annotations, rebuilding it if the
+         * annotations have been changed since it was built
+         */
+        private Map<String, AnnotationNode> getAnnotationIndex() {
+            if (this.annotationIndex != null && this.isIndexCurrent()) {
+                return this.annotationIndex;
+            }
+            
+            List<AnnotationNode> annotations = this.visibleAnnotations;
+            Map<String, AnnotationNode> index = new HashMap<String, AnnotationNode>();
+            if (annotations != null) {
+                for (AnnotationNode annotation : annotations) {
+                    if (!index.containsKey(annotation.desc)) {
+                        index.put(annotation.desc, annotation);
+                    }
+                }
+                this.indexedAnnotations = annotations.toArray(new AnnotationNode[annotations.size()]);
+            } else {
+                this.indexedAnnotations = new AnnotationNode[0];
+            }
+            this.annotationIndex = index;
+            this.injectorResolved = false;
+            return index;
+        }
+        
+        private boolean isIndexCurrent() {
+            List<AnnotationNode> annotations = this.visibleAnnotations;
+            if (annotations == null) {
+                return this.indexedAnnotations.length == 0;
+            }
+            if (annotations.size() != this.indexedAnnotations.length) {
+                return false;
+            }
+            int pos = 0;
+            for (AnnotationNode annotation : annotations) {
+                if (annotation != this.indexedAnnotations[pos++]) {
+                    return false;
+                }
+            }
+            return true;
         }
 
     }
@@ -239,6 +310,12 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          * application
          */
         protected MixinClassNode validationClassNode;
+        
+        /**
+         * Number of source map lines to allocate to this mixin in each target,
+         * computed on first use since it is the same for every target
+         */
+        private int sourceMapSize;
 
         State(ClassNode classNode) {
             this(classNode, null);
@@ -265,6 +342,13 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         ClassNode getClassNode() {
             return this.classNode;
         }
+        
+        int getSourceMapSize() {
+            if (this.sourceMapSize == 0) {
+                this.sourceMapSize = SourceMap.getSize(this.classNode);
+            }
+            return this.sourceMapSize;
+        }
 
         MixinClassNode getValidationClassNode() {
             if (this.validationClassNode == null) {
@@ -572,7 +656,7 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
                         continue;
                     }
                     
-                    if (!targetClass.hasSuperClass(classNode.superName, ClassInfo.Traversal.SUPER)) {
+                    if (!this.mixin.getParent().hasSuperClass(targetClass, classNode.superName)) {
                         ClassInfo superClass = ClassInfo.forName(classNode.superName);
                         if (superClass.isMixin()) {
                             // If superclass is a mixin, check for hierarchy derp
@@ -769,6 +853,13 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      */
     private final transient List<DeclaredTarget> declaredTargets;
     
+    /**
+     * True if the declared targets have not yet been filtered by the config
+     * plugin because the plugin makes its decisions in bulk, see
+     * {@link #applyPluginDecisions}
+     */
+    private transient boolean pluginDeferred;
+    
     /**
      * Mixin targets, read from the {@link Mixin} annotation on the mixin class
      */
@@ -868,7 +959,8 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         try {
             this.priority = this.readPriority(this.pendingState.getClassNode());
             this.virtual = this.readPseudo(this.pendingState.getValidationClassNode());
-            this.declaredTargets = this.readDeclaredTargets(this.pendingState.getValidationClassNode(), ignorePlugin);
+            this.pluginDeferred = !ignorePlugin && plugin.isBulk();
+            this.declaredTargets = this.readDeclaredTargets(this.pendingState.getValidationClassNode(), ignorePlugin || this.pluginDeferred);
         } catch (InvalidMixinException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -876,6 +968,42 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         }
     }
 
+    /**
+     * Get whether the declared targets of this mixin are waiting for a bulk
+     * decision from the config plugin
+     */
+    boolean isPluginDeferred() {
+        return this.pluginDeferred;
+    }
+    
+    /**
+     * Get the names of the declared targets of this mixin
+     */
+    Set<String> getDeclaredTargetNames() {
+        Set<String> names = new LinkedHashSet<String>();
+        for (DeclaredTarget target : this.declaredTargets) {
+            names.add(target.name);
+        }
+        return names;
+    }
+    
+    /**
+     * Filter the declared targets using the config plugin once the plugin has
+     * made its bulk decisions, pairs it did not decide are passed to the
+     * plugin individually
+     */
+    void applyPluginDecisions() {
+        if (!this.pluginDeferred) {
+            return;
+        }
+        this.pluginDeferred = false;
+        for (Iterator<DeclaredTarget> iter = this.declaredTargets.iterator(); iter.hasNext();) {
+            if (!this.shouldApplyMixin(false, iter.next().name)) {
+                iter.remove();
+            }
+        }
+    }
+
     /**
      * Parse the declared targets from the annotation into ClassInfo instances
      * and perform initial validation of each target
@@ -976,6 +1104,12 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         Section pluginTimer = this.profiler.begin("plugin");
         boolean result = ignorePlugin || this.plugin.shouldApplyMixin(targetName, this.className);
         pluginTimer.end();
+        if (!result) {
+            MixinAuditStream auditStream = MixinAuditStream.get();
+            if (auditStream != null) {
+                auditStream.onSkip(this.parent.getName(), this.className, targetName);
+            }
+        }
         return result;
     }
 
@@ -1207,6 +1341,14 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         return this.getState().createClassNode(flags);
     }
     
+    /**
+     * Get the number of lines to allocate to this mixin in the source map of
+     * each target class
+     */
+    int getSourceMapSize() {
+        return this.getState().getSourceMapSize();
+    }
+    
     /**
      * Get the target class names as declared for this mixin
      */
@@ -1291,7 +1433,10 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
                     this.logger.error("Classloader restrictions [{}] encountered loading {}, name: {}", restrictions, this, mixinClassName);
                 }
             }
-            classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true);
+            classNode = this.parent.getPrefetchedClass(mixinClassName);
+            if (classNode == null) {
+                classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true);
+            }
         } catch (ClassNotFoundException ex) {
             throw new ClassNotFoundException(String.format("The specified mixin '%s' was not found", mixinClassName));
         } catch (IOException ex) {
@@ -1356,6 +1501,15 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
             }
         }
         
+        this.markApplied(transformedName, targetClass);
+    }
+    
+    /**
+     * Record that the mixin has been applied to targetClass without notifying
+     * the plugin, used directly for mixins which were already applied
+     * ahead-of-time
+     */
+    void markApplied(String transformedName, ClassNode targetClass) {
         this.parent.postApply(transformedName, targetClass);
         this.info.addAppliedMixin(this);
     }
@@ -42,6 +42,7 @@ import org.spongepowered.asm.mixin.extensibility.IMixinConfigPlugin;
 import org.spongepowered.asm.mixin.extensibility.IMixinErrorHandler;
 import org.spongepowered.asm.mixin.extensibility.IMixinErrorHandler.ErrorAction;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
+import org.spongepowered.asm.mixin.gen.AccessorDevirtualiser;
 import org.spongepowered.asm.mixin.throwables.ClassAlreadyLoadedException;
 import org.spongepowered.asm.mixin.throwables.MixinApplyError;
 import org.spongepowered.asm.mixin.throwables.MixinException;
@@ -53,6 +54,7 @@ import org.spongepowered.asm.mixin.transformer.ext.IHotSwap;
 import org.spongepowered.asm.mixin.transformer.ext.extensions.ExtensionCheckClass.ValidationFailedException;
 import org.spongepowered.asm.mixin.transformer.ext.extensions.ExtensionClassExporter;
 import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
+import org.spongepowered.asm.mixin.transformer.meta.MixinWoven;
 import org.spongepowered.asm.mixin.transformer.throwables.IllegalClassLoadError;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.mixin.transformer.throwables.MixinTransformerError;
@@ -194,6 +196,11 @@ public class MixinProcessor {
      * Audit trail (if available); 
      */
     private final IMixinAuditTrail auditTrail;
+    
+    /**
+     * Structured audit stream (if enabled)
+     */
+    private final MixinAuditStream auditStream;
 
     /**
      * Current environment 
@@ -227,6 +234,7 @@ public class MixinProcessor {
         
         this.profiler = MixinEnvironment.getProfiler();
         this.auditTrail = this.service.getAuditTrail();
+        this.auditStream = MixinAuditStream.get();
     }
 
     /**
@@ -259,6 +267,9 @@ public class MixinProcessor {
             }
         }
         
+        ExtensionClassExporter exporter = this.extensions.<ExtensionClassExporter>getExtension(ExtensionClassExporter.class);
+        exporter.flush();
+        
         if (environment.getOption(Option.DEBUG_PROFILER)) {
             this.profiler.printSummary();
         }
@@ -297,6 +308,9 @@ public class MixinProcessor {
                 if (this.auditTrail != null) {
                     this.auditTrail.onPostProcess(name);
                 }
+                if (this.auditStream != null) {
+                    this.auditStream.onPostProcess(name);
+                }
                 Section postTimer = this.profiler.begin("postprocessor");
                 success = this.postProcessor.processClass(name, targetClassNode);
                 postTimer.end();
@@ -330,6 +344,10 @@ public class MixinProcessor {
                 throw new IllegalClassLoadError(this.getInvalidClassError(name, targetClassNode, packageOwnedByConfig));
             }
             
+            if (mixins != null && environment.getOption(Option.SKIP_PREWOVEN)) {
+                mixins = this.skipPrewovenMixins(name, targetClassNode, mixins);
+            }
+            
             if (mixins != null) {
                 // Re-entrance is "safe" as long as we don't need to apply any mixins, if there are mixins then we need to panic now
                 if (locked) {
@@ -356,6 +374,12 @@ public class MixinProcessor {
                     this.handleMixinApplyError(name, th, environment);
                 }
             }
+            
+            if (environment.getOption(Option.DEVIRTUALISE_ACCESSORS)) {
+                Section timer = this.profiler.begin("devirtualise");
+                success |= AccessorDevirtualiser.devirtualise(targetClassNode);
+                timer.end();
+            }
         } catch (MixinTransformerError er) {
             throw er;
         } catch (Throwable th) {
@@ -368,6 +392,38 @@ public class MixinProcessor {
         return success;
     }
 
+    /**
+     * Remove mixins which the ahead-of-time weaver already applied to the
+     * target class. Skipped mixins are still marked as applied so that config
+     * bookkeeping matches a normal application, but plugins are not notified
+     * since the mixins are not applied in this run.
+     *
+     * @param name Target class name
+     * @param targetClassNode Target class
+     * @param mixins Mixins to apply
+     * @return Remaining mixins to apply, or null if all were already applied
+     */
+    private SortedSet<MixinInfo> skipPrewovenMixins(String name, ClassNode targetClassNode, SortedSet<MixinInfo> mixins) {
+        AnnotationNode woven = Annotations.getInvisible(targetClassNode, MixinWoven.class);
+        if (woven == null) {
+            return mixins;
+        }
+
+        List<String> wovenMixins = Annotations.<List<String>>getValue(woven, "mixins", Collections.<String>emptyList());
+        ClassInfo targetInfo = ClassInfo.fromClassNode(targetClassNode);
+        for (Iterator<MixinInfo> iter = mixins.iterator(); iter.hasNext();) {
+            MixinInfo mixin = iter.next();
+            if (wovenMixins.contains(mixin.getClassName())) {
+                MixinProcessor.logger.debug("Skipping {} for {}, already applied ahead-of-time", mixin, name);
+                mixin.markApplied(name, targetClassNode);
+                targetInfo.addAppliedMixin(mixin);
+                iter.remove();
+            }
+        }
+
+        return mixins.isEmpty() ? null : mixins;
+    }
+
     private String getInvalidClassError(String name, ClassNode targetClassNode, MixinConfig ownedByConfig) {
         if (ownedByConfig.getClasses().contains(name)) {
             return String.format("Illegal classload request for %s. Mixin is defined in %s and cannot be referenced directly", name, ownedByConfig);
@@ -473,6 +529,9 @@ public class MixinProcessor {
                     iter.remove();
                     MixinProcessor.logger.log(this.verboseLoggingLevel, "Selecting config {}", config);
                     config.onSelect();
+                    if (this.auditStream != null) {
+                        this.auditStream.onSelect(config.getName(), environment.getPhase().toString());
+                    }
                     this.pendingConfigs.add(config);
                 }
             } catch (Exception ex) {
@@ -480,6 +539,7 @@ public class MixinProcessor {
             }
         }
         
+        MixinConfig.clearParseCache();
         Collections.sort(this.pendingConfigs);
     }
 
@@ -493,8 +553,20 @@ public class MixinProcessor {
         int totalMixins = 0;
         
         final IHotSwap hotSwapper = this.hotSwapper;
+        final MixinAuditStream auditStream = this.auditStream;
         for (MixinConfig config : this.pendingConfigs) {
             config.addListener(this.postProcessor);
+            if (auditStream != null) {
+                config.addListener(new IListener() {
+                    @Override
+                    public void onPrepare(MixinInfo mixin) {
+                        auditStream.onPrepare(mixin.getParent().getName(), mixin.getClassName(), mixin.getTargetClasses().size());
+                    }
+                    @Override
+                    public void onInit(MixinInfo mixin) {
+                    }
+                });
+            }
             if (hotSwapper != null) {
                 config.addListener(new IListener() {
                     @Override
@@ -508,16 +580,26 @@ public class MixinProcessor {
             }
         }
         
-        for (MixinConfig config : this.pendingConfigs) {
-            try {
-                MixinProcessor.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
-                config.prepare();
-                totalMixins += config.getMixinCount();
-            } catch (InvalidMixinException ex) {
-                this.handleMixinPrepareError(config, ex, environment);
-            } catch (Exception ex) {
-                String message = ex.getMessage();
-                MixinProcessor.logger.error("Error encountered whilst initialising mixin config '" + config.getName() + "': " + message, ex);
+        MixinClassPrefetcher prefetcher = this.startPrefetch(environment);
+        try {
+            for (MixinConfig config : this.pendingConfigs) {
+                try {
+                    MixinProcessor.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
+                    config.prepare();
+                    totalMixins += config.getMixinCount();
+                } catch (InvalidMixinException ex) {
+                    this.handleMixinPrepareError(config, ex, environment);
+                } catch (Exception ex) {
+                    String message = ex.getMessage();
+                    MixinProcessor.logger.error("Error encountered whilst initialising mixin config '" + config.getName() + "': " + message, ex);
+                }
+            }
+        } finally {
+            if (prefetcher != null) {
+                for (MixinConfig config : this.pendingConfigs) {
+                    config.setPrefetcher(null);
+                }
+                prefetcher.shutdown();
             }
         }
         
@@ -555,6 +637,33 @@ public class MixinProcessor {
         return totalMixins;
     }
 
+    /**
+     * Begin fetching the mixin classes of all pending configs on worker threads
+     * if prefetching is enabled, configs are prepared in order and so classes
+     * are submitted in the same order
+     * 
+     * @param environment Environment
+     * @return active prefetcher or null if prefetching is not enabled
+     */
+    private MixinClassPrefetcher startPrefetch(MixinEnvironment environment) {
+        if (!environment.getOption(Option.PREFETCH_MIXINS)) {
+            return null;
+        }
+        
+        List<String> mixinClasses = new ArrayList<String>();
+        for (MixinConfig config : this.pendingConfigs) {
+            mixinClasses.addAll(config.getPreparableMixinClasses());
+        }
+        
+        MixinClassPrefetcher prefetcher = MixinClassPrefetcher.start(this.service, mixinClasses);
+        if (prefetcher != null) {
+            for (MixinConfig config : this.pendingConfigs) {
+                config.setPrefetcher(prefetcher);
+            }
+        }
+        return prefetcher;
+    }
+
     /**
      * Apply mixins for specified target class to the class described by the
      * supplied byte array.
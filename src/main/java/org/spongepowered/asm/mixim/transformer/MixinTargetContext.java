@@ -193,7 +193,7 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
         this.classNode = classNode;
         this.targetClass = context;
         this.targetClassInfo = context.getClassInfo();
-        this.stratum = context.getSourceMap().addFile(this.classNode);
+        this.stratum = context.getSourceMap().addFile(this.classNode, mixin.getSourceMapSize());
         this.inheritsFromMixin = mixin.getClassInfo().hasMixinInHierarchy() || this.targetClassInfo.hasMixinTargetInHierarchy();
         this.detachedSuper = !this.classNode.superName.equals(this.getTarget().getClassNode().superName);
         this.sessionId = context.getSessionId();
@@ -447,11 +447,8 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
             this.transformDescriptor(method);
             activity.next("Transform LVT");
             this.transformLVT(method);
-    
-            // Offset line numbers per the stratum
-            activity.next("Transform Line Numbers");
-            this.stratum.applyOffset(method);
             
+            // Line numbers are offset per the stratum in the same pass
             activity.next("Transform Instructions");
             AbstractInsnNode lastInsn = null;
             for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
@@ -477,6 +474,8 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
                     InvokeDynamicInsnNode invokeNode = (InvokeDynamicInsnNode)insn;
                     insnActivity.append("%s %s", invokeNode.name, invokeNode.desc);
                     this.transformInvokeDynamicNode(method, iter, invokeNode);
+                } else if (insn instanceof LineNumberNode) {
+                    this.stratum.applyOffset((LineNumberNode)insn);
                 }
                 
                 lastInsn = insn;
@@ -1290,6 +1289,13 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
                 postInjectActivity.next(injectInfo.toString());
                 injectInfo.postInject();
             }
+            
+            MixinAuditStream auditStream = MixinAuditStream.get();
+            if (auditStream != null) {
+                for (InjectionInfo injectInfo : this.injectors) {
+                    auditStream.onInject(this.getTarget().getClassName(), injectInfo.toString(), injectInfo.getInjectedCallbackCount());
+                }
+            }
 
             applyActivity.end();
             this.injectors.clear();
@@ -0,0 +1,52 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixim.transformer;
+
+import org.spongepowered.asm.mixim.MixinEnvironment;
+
+/**
+ * Provides access to the mixin transformer for services which drive the
+ * transformer directly rather than via a launcher hook, such as the standalone
+ * service. Only one transformer may exist per environment, so the active
+ * transformer is returned if one was already created.
+ */
+public final class MixinTransformerFactory {
+    
+    private MixinTransformerFactory() {}
+
+    /**
+     * Get the active transformer, creating it if necessary
+     * 
+     * @return active mixin transformer
+     */
+    public static synchronized IMixinTransformer getTransformer() {
+        Object activeTransformer = MixinEnvironment.getCurrentEnvironment().getActiveTransformer();
+        if (activeTransformer instanceof IMixinTransformer) {
+            return (IMixinTransformer)activeTransformer;
+        }
+        return new MixinTransformer();
+    }
+
+}
@@ -26,12 +26,18 @@ package org.spongepowered.asm.mixim.transformer;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixim.extensibility.IMiximConfigPlugin;
+import org.spongepowered.asm.mixim.extensibility.IMiximConfigPluginBulk;
 import org.spongepowered.asm.mixim.extensibility.IMiximInfo;
 import org.spongepowered.asm.mixim.throwables.CompanionPluginError;
 import org.spongepowered.asm.service.IMiximService;
@@ -87,6 +93,12 @@ class PluginHandle {
      * Reflection objects for calling legacy (pre 0.8) preApply and postApply
      */
     private Method mdPreApply, mdPostApply;
+    
+    /**
+     * Cached plugin decisions, mixim class name to target class name to
+     * decision
+     */
+    private final Map<String, Map<String, Boolean>> decisions = new HashMap<String, Map<String, Boolean>>();
 
     PluginHandle(MiximConfig parent, IMiximService service, String pluginClassName) {
         IMiximConfigPlugin plugin = null;
@@ -128,8 +140,74 @@ class PluginHandle {
         return this.plugin != null ? this.plugin.getMixims() : null;
     }
 
+    /**
+     * Get whether the plugin can make decisions for many mixims at once, in
+     * which case callers should collect the targets of all of their mixims and
+     * pass them to {@link #shouldApplyMixims} before calling
+     * {@link #shouldApplyMixim}
+     */
+    boolean isBulk() {
+        return this.plugin instanceof IMiximConfigPluginBulk;
+    }
+
+    /**
+     * Ask a bulk plugin to decide all of the supplied (mixim, target) pairs in
+     * one call and cache the decisions it makes. Any pairs the plugin does not
+     * decide are left for {@link #shouldApplyMixim}.
+     * 
+     * @param miximTargets map of mixim class names to declared target names
+     */
+    void shouldApplyMixims(Map<String, Set<String>> miximTargets) {
+        if (!this.isBulk() || miximTargets.isEmpty()) {
+            return;
+        }
+        
+        Map<String, Set<String>> accepted;
+        try {
+            accepted = ((IMiximConfigPluginBulk)this.plugin).shouldApplyMixims(Collections.<String, Set<String>>unmodifiableMap(miximTargets));
+        } catch (AbstractMethodError ex) {
+            PluginHandle.logger.warn("Companion plugin [{}] for mixim config [{}] does not support bulk decisions, falling back to individual "
+                    + "calls", this.plugin.getClass().getName(), this.parent);
+            return;
+        }
+        
+        if (accepted == null) {
+            return;
+        }
+        
+        for (Entry<String, Set<String>> entry : miximTargets.entrySet()) {
+            Set<String> acceptedTargets = accepted.get(entry.getKey());
+            if (acceptedTargets == null) {
+                continue;
+            }
+            for (String targetName : entry.getValue()) {
+                this.putDecision(entry.getKey(), targetName, acceptedTargets.contains(targetName));
+            }
+        }
+    }
+
     boolean shouldApplyMixim(String targetName, String className) {
-        return this.plugin == null || this.plugin.shouldApplyMixim(targetName, className);
+        if (this.plugin == null) {
+            return true;
+        }
+        
+        Map<String, Boolean> decisions = this.decisions.get(className);
+        Boolean decision = decisions != null ? decisions.get(targetName) : null;
+        if (decision == null) {
+            decision = this.putDecision(className, targetName, this.plugin.shouldApplyMixim(targetName, className));
+        }
+        return decision.booleanValue();
+    }
+    
+    private Boolean putDecision(String className, String targetName, boolean apply) {
+        Map<String, Boolean> decisions = this.decisions.get(className);
+        if (decisions == null) {
+            decisions = new HashMap<String, Boolean>();
+            this.decisions.put(className, decisions);
+        }
+        Boolean decision = Boolean.valueOf(apply);
+        decisions.put(targetName, decision);
+        return decision;
     }
     
     /**
@@ -205,6 +283,10 @@ class PluginHandle {
                     IMiximInfo.class);
             this.mdPostApply = pluginClass.getMethod("postApply", String.class, org.spongepowered.asm.lib.tree.ClassNode.class, String.class,
                     IMiximInfo.class);
+            
+            // Resolved once, so skip the access check on every call
+            this.mdPreApply.setAccessible(true);
+            this.mdPostApply.setAccessible(true);
         } catch (Throwable th) {
             PluginHandle.logger.catching(th);
         }
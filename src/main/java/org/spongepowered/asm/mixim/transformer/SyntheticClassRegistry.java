@@ -24,6 +24,8 @@
  */
 package org.spongepowered.asm.mixim.transformer;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -62,6 +64,15 @@ class SyntheticClassRegistry implements ISyntheticClassRegistry {
         return this.classes.get(name.replace('.', '/'));
     }
     
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.ISyntheticClassRegistry
+     *      #getSyntheticClasses()
+     */
+    @Override
+    public Collection<ISyntheticClassInfo> getSyntheticClasses() {
+        return Collections.<ISyntheticClassInfo>unmodifiableCollection(this.classes.values());
+    }
+    
     /**
      * Package-private
      */
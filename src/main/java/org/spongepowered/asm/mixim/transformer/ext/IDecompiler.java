@@ -38,4 +38,10 @@ public interface IDecompiler {
      */
     public abstract void decompile(File file);
     
+    /**
+     * Block until any class files queued for decompilation have been
+     * processed. Decompilers which run synchronously can simply return.
+     */
+    public abstract void flush();
+    
 }
@@ -27,6 +27,12 @@ package org.spongepowered.asm.mixim.transformer.ext.extensions;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
@@ -55,6 +61,23 @@ public class ExtensionClassExporter implements IExtension {
     
     private static final String EXPORT_CLASS_DIR = "class";
     private static final String EXPORT_JAVA_DIR = "java";
+    
+    /**
+     * Number of threads writing exported classes
+     */
+    private static final int WRITER_THREADS = 2;
+    
+    /**
+     * Time to allow queued exports to finish when the VM shuts down
+     */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    
+    /**
+     * Fallbacks for invalid async decompiler settings, these match the
+     * defaults of the corresponding options
+     */
+    private static final int DEFAULT_DECOMPILE_WORKERS = 2;
+    private static final int DEFAULT_DECOMPILE_BATCH_SIZE = 32;
 
     /**
      * Logger
@@ -71,8 +94,31 @@ public class ExtensionClassExporter implements IExtension {
      */
     private final IDecompiler decompiler;
     
+    /**
+     * Writes exported classes in the background, null if exports are written
+     * synchronously
+     */
+    private final ThreadPoolExecutor writer;
+    
+    /**
+     * Exports handed to the writer which have not been written yet
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    
+    /**
+     * Number of exports dropped because the writer queue was full
+     */
+    private final AtomicInteger dropped = new AtomicInteger();
+    
+    /**
+     * Last export filter and its compiled pattern
+     */
+    private String filter;
+    private Pattern filterPattern;
+    
     public ExtensionClassExporter(MiximEnvironment env) {
         this.decompiler = this.initDecompiler(env, new File(Constants.DEBUG_OUTPUT_DIR, ExtensionClassExporter.EXPORT_JAVA_DIR));
+        this.writer = this.initWriter(env);
 
         try {
             MoreFiles.deleteRecursively(this.classExportDir.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
@@ -96,10 +142,20 @@ public class ExtensionClassExporter implements IExtension {
             String className = ExtensionClassExporter.DECOMPILER_CLASS + (as ? "Async" : "");
             @SuppressWarnings("unchecked")
             Class<? extends IDecompiler> clazz = (Class<? extends IDecompiler>)Class.forName(className);
-            Constructor<? extends IDecompiler> ctor = clazz.getDeclaredConstructor(File.class);
-            IDecompiler decompiler = ctor.newInstance(outputPath);
+            IDecompiler decompiler;
+            if (as) {
+                int workers = ExtensionClassExporter.getIntOption(env, Option.DEBUG_EXPORT_DECOMPILE_WORKERS,
+                        ExtensionClassExporter.DEFAULT_DECOMPILE_WORKERS);
+                int batchSize = ExtensionClassExporter.getIntOption(env, Option.DEBUG_EXPORT_DECOMPILE_BATCH_SIZE,
+                        ExtensionClassExporter.DEFAULT_DECOMPILE_BATCH_SIZE);
+                Constructor<? extends IDecompiler> ctor = clazz.getDeclaredConstructor(File.class, int.class, int.class);
+                decompiler = ctor.newInstance(outputPath, workers, batchSize);
+            } else {
+                Constructor<? extends IDecompiler> ctor = clazz.getDeclaredConstructor(File.class);
+                decompiler = ctor.newInstance(outputPath);
+            }
             ExtensionClassExporter.logger.info("Fernflower decompiler was successfully initialised, exported classes will be decompiled{}",
-                    as ? " in a separate thread" : "");
+                    as ? " in separate threads" : "");
             return decompiler;
         } catch (Throwable th) {
             ExtensionClassExporter.logger.info("Fernflower could not be loaded, exported classes will not be decompiled. {}: {}",
@@ -108,13 +164,60 @@ public class ExtensionClassExporter implements IExtension {
         return null;
     }
 
+    private static int getIntOption(MiximEnvironment env, Option option, int defaultValue) {
+        String value = env.getOptionValue(option);
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch (NumberFormatException ex) {
+            ExtensionClassExporter.logger.warn("Invalid value {} for {}, using {}", value, option, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private ThreadPoolExecutor initWriter(MiximEnvironment env) {
+        int queueSize = ExtensionClassExporter.getIntOption(env, Option.DEBUG_EXPORT_QUEUE_SIZE, 0);
+        if (queueSize < 1) {
+            return null;
+        }
+        
+        final ThreadPoolExecutor writer = new ThreadPoolExecutor(ExtensionClassExporter.WRITER_THREADS, ExtensionClassExporter.WRITER_THREADS,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Mixim Export");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        
+        // Writer threads are daemons, so let queued exports finish at shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread("Mixim Export Shutdown") {
+            @Override
+            public void run() {
+                writer.shutdown();
+                try {
+                    writer.awaitTermination(ExtensionClassExporter.SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    // shutting down anyway
+                }
+            }
+        });
+        return writer;
+    }
+
     private String prepareFilter(String filter) {
         filter = "^\\Q" + filter.replace("**", "\201").replace("*", "\202").replace("?", "\203") + "\\E$";
         return filter.replace("\201", "\\E.*\\Q").replace("\202", "\\E[^\\.]+\\Q").replace("\203", "\\E.\\Q").replace("\\Q\\E", "");
     }
 
     private boolean applyFilter(String filter, String subject) {
-        return Pattern.compile(this.prepareFilter(filter), Pattern.CASE_INSENSITIVE).matcher(subject).matches();
+        Pattern pattern = this.filterPattern;
+        if (pattern == null || !filter.equals(this.filter)) {
+            pattern = Pattern.compile(this.prepareFilter(filter), Pattern.CASE_INSENSITIVE);
+            this.filterPattern = pattern;
+            this.filter = filter;
+        }
+        return pattern.matcher(subject).matches();
     }
     
     @Override
@@ -138,15 +241,114 @@ public class ExtensionClassExporter implements IExtension {
             if (force || filter == null || this.applyFilter(filter, name)) {
                 Section exportTimer = MiximEnvironment.getProfiler().begin("debug.export");
                 
-                File outputFile = this.dumpClass(name.replace('.', '/'), classNode);
-                if (this.decompiler != null) {
-                    this.decompiler.decompile(outputFile);
+                String fileName = name.replace('.', '/');
+                if (this.writer == null) {
+                    File outputFile = this.dumpClass(fileName, classNode);
+                    if (this.decompiler != null) {
+                        this.decompiler.decompile(outputFile);
+                    }
+                } else if (!force && this.writer.getQueue().remainingCapacity() == 0) {
+                    // Don't bother serialising the class if it will be dropped
+                    this.drop(name);
+                } else {
+                    this.enqueue(name, fileName, force, classNode);
                 }
                 exportTimer.end();
             }
         }
     }
 
+    /**
+     * Wait for queued exports to be written and for the decompiler to finish
+     * processing them
+     */
+    public void flush() {
+        if (this.writer != null) {
+            synchronized (this.pending) {
+                while (this.pending.get() > 0) {
+                    try {
+                        this.pending.wait(1000L);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+        
+        if (this.decompiler != null) {
+            this.decompiler.flush();
+        }
+    }
+    
+    /**
+     * Serialise the class on the calling thread, since the node may change
+     * once we return, and hand the bytecode to the writer. Forced exports
+     * are written synchronously if the queue is full.
+     */
+    private void enqueue(String name, String fileName, boolean force, ClassNode classNode) {
+        final byte[] bytecode = ExtensionClassExporter.getClassBytes(classNode, true);
+        if (bytecode == null) {
+            return;
+        }
+        
+        final File outputFile = new File(this.classExportDir, fileName + ".class");
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ExtensionClassExporter.this.write(outputFile, bytecode);
+                } finally {
+                    ExtensionClassExporter.this.onWriteComplete();
+                }
+            }
+        };
+        
+        this.pending.incrementAndGet();
+        try {
+            this.writer.execute(task);
+        } catch (RejectedExecutionException ex) {
+            this.onWriteComplete();
+            if (force) {
+                task.run();
+            } else {
+                this.drop(name);
+            }
+        }
+    }
+    
+    void onWriteComplete() {
+        if (this.pending.decrementAndGet() == 0) {
+            synchronized (this.pending) {
+                this.pending.notifyAll();
+            }
+        }
+    }
+    
+    void write(File outputFile, byte[] bytecode) {
+        outputFile.getParentFile().mkdirs();
+        try {
+            Files.write(bytecode, outputFile);
+        } catch (IOException ex) {
+            // don't care
+            return;
+        }
+        if (this.decompiler != null) {
+            synchronized (this.decompiler) {
+                this.decompiler.decompile(outputFile);
+            }
+        }
+    }
+    
+    private void drop(String name) {
+        int dropped = this.dropped.incrementAndGet();
+        if (dropped == 1) {
+            ExtensionClassExporter.logger.warn("Class export queue is full, exports will be dropped until it drains. Increase {} to export more "
+                    + "classes or set it to 0 to export synchronously", Option.DEBUG_EXPORT_QUEUE_SIZE);
+        }
+        ExtensionClassExporter.logger.debug("Dropped export of {}, {} exports dropped so far", name, dropped);
+    }
+
     /**
      * Write class bytecode to disk for debug purposes
      * 
@@ -158,7 +360,7 @@ public class ExtensionClassExporter implements IExtension {
         File outputFile = new File(this.classExportDir, fileName + ".class");
         outputFile.getParentFile().mkdirs();
         try {
-            byte[] bytecode = ExtensionClassExporter.getClassBytes(classNode, true);
+            final byte[] bytecode = ExtensionClassExporter.getClassBytes(classNode, true);
             if (bytecode != null) {
                 Files.write(bytecode, outputFile);
             }
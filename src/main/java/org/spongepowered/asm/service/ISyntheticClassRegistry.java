@@ -24,6 +24,8 @@
  */
 package org.spongepowered.asm.service;
 
+import java.util.Collection;
+
 /**
  * Registry for synthetic classes, used internally to track which classes need
  * to be generated at runtime by the mixim pipeline.
@@ -42,4 +44,13 @@ public interface ISyntheticClassRegistry {
      */
     public abstract ISyntheticClassInfo findSyntheticClass(String name);
 
+    /**
+     * Get all synthetic classes registered so far. This is used by tools which
+     * need to generate every synthetic class up-front rather than on demand,
+     * such as the ahead-of-time weaver.
+     * 
+     * @return Read-only view of the registered synthetic classes
+     */
+    public abstract Collection<ISyntheticClassInfo> getSyntheticClasses();
+
 }
@@ -0,0 +1,359 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.service.standalone;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.launch.MiximBootstrap;
+import org.spongepowered.asm.mixim.Mixins;
+import org.spongepowered.asm.mixim.extensibility.IMixinInfo;
+import org.spongepowered.asm.mixim.transformer.ClassInfo;
+import org.spongepowered.asm.mixim.transformer.meta.MixinWoven;
+import org.spongepowered.asm.mixim.transformer.throwables.IllegalClassLoadError;
+import org.spongepowered.asm.service.ISyntheticClassInfo;
+import org.spongepowered.asm.util.Annotations;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Ahead-of-time weaver. Applies mixims to a set of input jars at build time and
+ * writes a single pre-woven jar containing every woven class, every synthetic
+ * class generated during weaving (argument bundles, inner classes) and every
+ * post-processed accessor mixim found in the inputs.
+ * 
+ * <p>Each woven class is decorated with {@link MixinWoven} listing the mixims
+ * which were applied, and a manifest describing the weave is written to
+ * <tt>{@value #MANIFEST}</tt>. When the pre-woven jar is loaded at runtime
+ * with <tt>mixin.env.skipPrewoven</tt> enabled, mixims recorded on a class are
+ * not applied a second time.</p>
+ * 
+ * <p>Command line usage:</p>
+ * 
+ * <blockquote><pre>
+ * java org.spongepowered.asm.service.standalone.AheadOfTimeWeaver
+ *     --config mixims.mymod.json [--config ...]
+ *     [--classpath libraries]
+ *     --output woven.jar
+ *     game.jar mymod.jar</pre>
+ * </blockquote>
+ * 
+ * <p>Jars which contain accessor mixims should be passed as inputs rather than
+ * on the class path so that the processed accessors are included in the
+ * output.</p>
+ */
+public final class AheadOfTimeWeaver {
+    
+    /**
+     * Path of the manifest in the woven jar
+     */
+    public static final String MANIFEST = "META-INF/mixim-prewoven.json";
+    
+    /**
+     * Manifest contents, serialised with gson
+     */
+    static class Manifest {
+        
+        @SerializedName("version")
+        String version = MiximBootstrap.VERSION;
+        
+        @SerializedName("configs")
+        List<String> configs = new ArrayList<String>();
+        
+        @SerializedName("classes")
+        Map<String, List<String>> classes = new TreeMap<String, List<String>>();
+        
+        @SerializedName("synthetic")
+        List<String> synthetic = new ArrayList<String>();
+        
+    }
+    
+    private static final Logger logger = LogManager.getLogger("mixim");
+    
+    private final MiximServiceStandalone service;
+    
+    private final List<File> inputs = new ArrayList<File>();
+    
+    private final Manifest manifest = new Manifest();
+    
+    /**
+     * Entries already written to the output, first input wins
+     */
+    private final Set<String> written = new HashSet<String>();
+    
+    /**
+     * Create a weaver using the active standalone service
+     */
+    public AheadOfTimeWeaver() {
+        this.service = MiximServiceStandalone.getInstance();
+    }
+    
+    /**
+     * Add a jar to be woven into the output. Must be called before
+     * {@link #addConfig}.
+     * 
+     * @param input jar to weave
+     * @return fluent interface
+     * @throws IOException if the jar cannot be opened
+     */
+    public AheadOfTimeWeaver addInput(File input) throws IOException {
+        this.service.addSource(input);
+        this.inputs.add(input);
+        return this;
+    }
+    
+    /**
+     * Add a jar or directory which is needed to resolve classes but which is
+     * not woven into the output. Must be called before {@link #addConfig}.
+     * 
+     * @param library library to add
+     * @return fluent interface
+     * @throws IOException if the library cannot be opened
+     */
+    public AheadOfTimeWeaver addLibrary(File library) throws IOException {
+        this.service.addSource(library);
+        return this;
+    }
+    
+    /**
+     * Add a mixim config to apply. Starts the service if it is not already
+     * started.
+     * 
+     * @param config config resource name
+     * @return fluent interface
+     */
+    public AheadOfTimeWeaver addConfig(String config) {
+        this.service.start();
+        Mixins.addConfiguration(config);
+        this.manifest.configs.add(config);
+        return this;
+    }
+    
+    /**
+     * Weave all inputs and write the result to the specified jar
+     * 
+     * @param output jar to write
+     * @throws IOException if an input cannot be read or the output cannot be
+     *      written
+     */
+    public void weave(File output) throws IOException {
+        this.service.start();
+        this.written.clear();
+        
+        ZipOutputStream out = null;
+        try {
+            out = new ZipOutputStream(new FileOutputStream(output));
+            for (File input : this.inputs) {
+                this.weaveInput(input, out);
+            }
+            this.writeSyntheticClasses(out);
+            this.writeManifest(out);
+        } finally {
+            Closeables.close(out, true);
+        }
+        
+        AheadOfTimeWeaver.logger.info("Wove {} classes and {} synthetic classes into {}", this.manifest.classes.size(),
+                this.manifest.synthetic.size(), output);
+    }
+
+    private void weaveInput(File input, ZipOutputStream out) throws IOException {
+        ZipInputStream in = null;
+        try {
+            in = new ZipInputStream(new FileInputStream(input));
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                String entryName = entry.getName();
+                if (entry.isDirectory() || AheadOfTimeWeaver.isSignature(entryName) || !this.written.add(entryName)) {
+                    continue;
+                }
+                
+                byte[] entryBytes = ByteStreams.toByteArray(in);
+                if (entryName.endsWith(".class")) {
+                    entryBytes = this.weaveEntry(entryName.substring(0, entryName.length() - 6), entryBytes);
+                }
+                
+                ZipEntry outEntry = new ZipEntry(entryName);
+                outEntry.setTime(entry.getTime());
+                out.putNextEntry(outEntry);
+                out.write(entryBytes);
+                out.closeEntry();
+            }
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    private byte[] weaveEntry(String className, byte[] classBytes) throws IOException {
+        byte[] wovenBytes;
+        try {
+            wovenBytes = this.service.weaveClass(className);
+        } catch (ClassNotFoundException ex) {
+            AheadOfTimeWeaver.logger.debug("Skipping {}: {}", className, ex.getMessage());
+            return classBytes;
+        } catch (IllegalClassLoadError err) {
+            // Mixims are copied through unchanged
+            return classBytes;
+        }
+        
+        ClassInfo info = ClassInfo.fromCache(className);
+        if (info == null || info.isMixim() || info.getAppliedMixims().isEmpty()) {
+            return wovenBytes;
+        }
+        
+        List<String> applied = new ArrayList<String>();
+        for (IMixinInfo mixin : info.getAppliedMixims()) {
+            applied.add(mixin.getClassName());
+        }
+        
+        this.manifest.classes.put(className.replace('/', '.'), applied);
+        ClassNode classNode = new ClassNode();
+        new ClassReader(wovenBytes).accept(classNode, 0);
+        Annotations.setInvisible(classNode, MixinWoven.class, "mixins", applied);
+        ClassWriter cw = new ClassWriter(0);
+        classNode.accept(cw);
+        return cw.toByteArray();
+    }
+    
+    private void writeSyntheticClasses(ZipOutputStream out) throws IOException {
+        List<ISyntheticClassInfo> syntheticClasses = new ArrayList<ISyntheticClassInfo>(this.service.getTransformer().getExtensions()
+                .getSyntheticClassRegistry().getSyntheticClasses());
+        for (ISyntheticClassInfo syntheticClass : syntheticClasses) {
+            String entryName = syntheticClass.getName() + ".class";
+            if (!this.written.add(entryName)) {
+                continue;
+            }
+            
+            byte[] classBytes;
+            try {
+                classBytes = this.service.weaveClass(syntheticClass.getClassName());
+            } catch (ClassNotFoundException ex) {
+                throw new IOException("Could not generate synthetic class " + syntheticClass.getClassName(), ex);
+            }
+            
+            out.putNextEntry(new ZipEntry(entryName));
+            out.write(classBytes);
+            out.closeEntry();
+            this.manifest.synthetic.add(syntheticClass.getClassName());
+        }
+    }
+    
+    private void writeManifest(ZipOutputStream out) throws IOException {
+        out.putNextEntry(new ZipEntry(AheadOfTimeWeaver.MANIFEST));
+        Writer writer = new OutputStreamWriter(out, Charsets.UTF_8);
+        new GsonBuilder().setPrettyPrinting().create().toJson(this.manifest, writer);
+        writer.flush();
+        out.closeEntry();
+    }
+    
+    /**
+     * Woven classes invalidate any jar signature, so signature files are not
+     * copied to the output
+     */
+    private static boolean isSignature(String entryName) {
+        if (!entryName.startsWith("META-INF/") || entryName.indexOf('/', 9) > -1) {
+            return false;
+        }
+        return entryName.endsWith(".SF") || entryName.endsWith(".RSA") || entryName.endsWith(".DSA") || entryName.endsWith(".EC");
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> configs = new ArrayList<String>();
+        List<File> libraries = new ArrayList<File>();
+        List<File> inputs = new ArrayList<File>();
+        File output = null;
+        
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--config".equals(arg) && i < args.length - 1) {
+                configs.add(args[++i]);
+            } else if (("--classpath".equals(arg) || "-cp".equals(arg)) && i < args.length - 1) {
+                for (String path : args[++i].split(File.pathSeparator)) {
+                    if (path.length() > 0) {
+                        libraries.add(new File(path));
+                    }
+                }
+            } else if (("--output".equals(arg) || "-o".equals(arg)) && i < args.length - 1) {
+                output = new File(args[++i]);
+            } else if (arg.startsWith("-")) {
+                AheadOfTimeWeaver.usage("Unrecognised argument " + arg);
+                return;
+            } else {
+                inputs.add(new File(arg));
+            }
+        }
+        
+        if (output == null || configs.isEmpty() || inputs.isEmpty()) {
+            AheadOfTimeWeaver.usage(null);
+            return;
+        }
+        
+        System.setProperty(MiximServiceStandalone.ENABLE_PROPERTY, "true");
+        AheadOfTimeWeaver weaver = new AheadOfTimeWeaver();
+        try {
+            for (File input : inputs) {
+                weaver.addInput(input);
+            }
+            for (File library : libraries) {
+                weaver.addLibrary(library);
+            }
+            for (String config : configs) {
+                weaver.addConfig(config);
+            }
+            weaver.weave(output);
+        } finally {
+            weaver.service.close();
+        }
+    }
+
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("Usage: AheadOfTimeWeaver --config <config> [--config <config> ...] [--classpath <path>] --output <jar> <input jar> ...");
+        System.exit(1);
+    }
+
+}
@@ -0,0 +1,612 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.service.standalone;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.launch.MiximBootstrap;
+import org.spongepowered.asm.launch.platform.MainAttributes;
+import org.spongepowered.asm.launch.platform.container.ContainerHandleURI;
+import org.spongepowered.asm.launch.platform.container.ContainerHandleVirtual;
+import org.spongepowered.asm.launch.platform.container.IContainerHandle;
+import org.spongepowered.asm.mixim.MixinEnvironment.Phase;
+import org.spongepowered.asm.mixim.transformer.IMixinTransformer;
+import org.spongepowered.asm.mixim.transformer.MixinTransformerFactory;
+import org.spongepowered.asm.mixim.transformer.throwables.IllegalClassLoadError;
+import org.spongepowered.asm.service.IClassBytecodeProvider;
+import org.spongepowered.asm.service.IClassProvider;
+import org.spongepowered.asm.service.IClassTracker;
+import org.spongepowered.asm.service.ILegacyClassTransformer;
+import org.spongepowered.asm.service.IMiximAuditTrail;
+import org.spongepowered.asm.service.IMiximService;
+import org.spongepowered.asm.service.ITransformer;
+import org.spongepowered.asm.service.ITransformerProvider;
+import org.spongepowered.asm.service.MiximService;
+import org.spongepowered.asm.service.MiximServiceAbstract;
+import org.spongepowered.asm.util.IConsumer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Mixim service which has no launcher or game dependencies. Bytecode is read
+ * from a {@link StandaloneClassPath} made up of plain jars and directories and
+ * classes are woven on request rather than at class load time, which makes
+ * this service suitable for tests, benchmarks and build-time weaving.
+ * 
+ * <p>The service is only valid when the <tt>mixim.service.standalone</tt>
+ * system property is set to <tt>true</tt> so that it never competes with a
+ * launcher service. Typical usage is:</p>
+ * 
+ * <blockquote><pre>
+ * System.setProperty("mixim.service.standalone", "true");
+ * MiximServiceStandalone service = MiximServiceStandalone.getInstance();
+ * service.addSource(gameJar).addSource(modJar);
+ * service.start();
+ * Mixins.addConfiguration("mixims.mymod.json");
+ * service.weaveJar(gameJar, outputJar);</pre>
+ * </blockquote>
+ */
+public class MiximServiceStandalone extends MiximServiceAbstract implements IClassProvider, IClassBytecodeProvider, ITransformerProvider,
+        IClassTracker {
+    
+    /**
+     * System property which enables this service
+     */
+    public static final String ENABLE_PROPERTY = "mixim.service.standalone";
+    
+    /**
+     * Class path to read bytecode and resources from
+     */
+    private final StandaloneClassPath classPath = new StandaloneClassPath();
+    
+    /**
+     * Registered transformers, the mixim transformer itself is not included
+     */
+    private final List<ITransformer> transformers = new ArrayList<ITransformer>();
+    
+    /**
+     * Transformer exclusions
+     */
+    private final Set<String> transformerExclusions = new HashSet<String>();
+    
+    /**
+     * Classes which were registered as invalid
+     */
+    private final Set<String> invalidClasses = new HashSet<String>();
+    
+    /**
+     * Classes which have been woven, the standalone equivalent of "loaded"
+     */
+    private final Set<String> loadedClasses = new HashSet<String>();
+
+    /**
+     * Environment phase consumer, TEMP
+     */
+    private IConsumer<Phase> phaseConsumer;
+    
+    /**
+     * Class loader for plugin and agent classes, recreated when sources are
+     * added
+     */
+    private URLClassLoader classLoader;
+    
+    /**
+     * Transformer, created when the service is started
+     */
+    private IMixinTransformer transformer;
+    
+    /**
+     * Get whether the standalone service is enabled
+     */
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty(MiximServiceStandalone.ENABLE_PROPERTY));
+    }
+    
+    /**
+     * Get the active standalone service
+     * 
+     * @return the active service
+     * @throws IllegalStateException if the active service is not the
+     *      standalone service
+     */
+    public static MiximServiceStandalone getInstance() {
+        IMiximService service = MiximService.getService();
+        if (!(service instanceof MiximServiceStandalone)) {
+            throw new IllegalStateException("The active mixim service is " + service.getName() + ", expected Standalone. Is "
+                    + MiximServiceStandalone.ENABLE_PROPERTY + " set?");
+        }
+        return (MiximServiceStandalone)service;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getName()
+     */
+    @Override
+    public String getName() {
+        return "Standalone";
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#isValid()
+     */
+    @Override
+    public boolean isValid() {
+        return MiximServiceStandalone.isEnabled();
+    }
+
+    // TEMP
+    @SuppressWarnings("deprecation")
+    @Override
+    public void wire(Phase phase, IConsumer<Phase> phaseConsumer) {
+        super.wire(phase, phaseConsumer);
+        this.phaseConsumer = phaseConsumer;
+    }
+    
+    /**
+     * Add a jar or directory to the class path of this service
+     * 
+     * @param file jar or directory to add
+     * @return fluent interface
+     * @throws IOException if the file does not exist or cannot be opened
+     */
+    public MiximServiceStandalone addSource(File file) throws IOException {
+        synchronized (this.classPath) {
+            if (!this.classPath.contains(file)) {
+                this.classPath.add(file);
+                this.classLoader = null;
+            }
+        }
+        return this;
+    }
+    
+    /**
+     * Get the class path for this service
+     */
+    public StandaloneClassPath getStandaloneClassPath() {
+        return this.classPath;
+    }
+
+    /**
+     * Register a transformer to run before mixims are applied, transformers
+     * are run in the order they are registered
+     * 
+     * @param transformer transformer to add
+     * @return fluent interface
+     */
+    public MiximServiceStandalone registerTransformer(ILegacyClassTransformer transformer) {
+        synchronized (this.transformers) {
+            this.transformers.add(transformer);
+        }
+        return this;
+    }
+    
+    /**
+     * Bootstrap the mixim subsystem and move the environment to the default
+     * phase. Sources should be added before calling this method so that
+     * configs declared in jar manifests are discovered, configs added via
+     * <tt>Mixins</tt> must be added <em>after</em> calling this method and are
+     * selected when the first class is woven.
+     */
+    public synchronized void start() {
+        if (this.transformer != null) {
+            return;
+        }
+        
+        MiximBootstrap.init();
+        MiximBootstrap.getPlatform().inject();
+        if (this.phaseConsumer != null) {
+            this.phaseConsumer.accept(Phase.DEFAULT);
+        }
+        this.transformer = MixinTransformerFactory.getTransformer();
+    }
+    
+    /**
+     * Get the transformer, starting the service if necessary
+     */
+    public IMixinTransformer getTransformer() {
+        this.start();
+        return this.transformer;
+    }
+    
+    /**
+     * Weave the specified class. The class bytes are read from the class path
+     * and passed through all registered transformers and then the mixim
+     * transformer. Mixim-synthetic classes are generated if the class is not
+     * found on the class path.
+     * 
+     * @param className Name of the class to weave
+     * @return woven class bytes
+     * @throws ClassNotFoundException if the class was not found and could not
+     *      be generated, or the class was registered as invalid
+     * @throws IOException if the class could not be read
+     */
+    public byte[] weaveClass(String className) throws ClassNotFoundException, IOException {
+        String name = className.replace('/', '.');
+        synchronized (this.invalidClasses) {
+            if (this.invalidClasses.contains(name)) {
+                throw new ClassNotFoundException(String.format("%s is invalid", name));
+            }
+        }
+        
+        byte[] classBytes = this.classPath.getClassBytes(name);
+        if (classBytes != null) {
+            classBytes = this.applyTransformers(name, classBytes);
+        }
+        
+        byte[] wovenBytes = this.getTransformer().transformClassBytes(name, name, classBytes);
+        if (wovenBytes == null) {
+            throw new ClassNotFoundException(String.format("The specified class '%s' was not found", name));
+        }
+        
+        synchronized (this.loadedClasses) {
+            this.loadedClasses.add(name);
+        }
+        return wovenBytes;
+    }
+    
+    /**
+     * Weave all classes in the specified jar and write the result to the
+     * output file. Non-class entries are copied unchanged. The input jar is
+     * added to the class path if it is not already present.
+     * 
+     * @param input jar to weave
+     * @param output file to write woven jar to
+     * @throws IOException if the jar cannot be read or written
+     */
+    public void weaveJar(File input, File output) throws IOException {
+        this.addSource(input);
+        
+        ZipInputStream in = null;
+        ZipOutputStream out = null;
+        try {
+            in = new ZipInputStream(new FileInputStream(input));
+            out = new ZipOutputStream(new FileOutputStream(output));
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                byte[] entryBytes = ByteStreams.toByteArray(in);
+                String entryName = entry.getName();
+                if (!entry.isDirectory() && entryName.endsWith(".class")) {
+                    entryBytes = this.weaveEntry(entryName.substring(0, entryName.length() - 6), entryBytes);
+                }
+                
+                ZipEntry outEntry = new ZipEntry(entryName);
+                outEntry.setTime(entry.getTime());
+                out.putNextEntry(outEntry);
+                out.write(entryBytes);
+                out.closeEntry();
+            }
+        } finally {
+            Closeables.closeQuietly(in);
+            Closeables.close(out, true);
+        }
+    }
+
+    private byte[] weaveEntry(String className, byte[] classBytes) throws IOException {
+        try {
+            return this.weaveClass(className);
+        } catch (ClassNotFoundException ex) {
+            // Mixins and other invalid classes are copied through unchanged
+            MiximServiceAbstract.logger.debug("Skipping {}: {}", className, ex.getMessage());
+            return classBytes;
+        } catch (IllegalClassLoadError err) {
+            // Classes in mixim packages are copied through unchanged
+            return classBytes;
+        }
+    }
+    
+    private byte[] applyTransformers(String name, byte[] basicClass) {
+        byte[] classBytes = basicClass;
+        for (ITransformer transformer : this.getDelegatedTransformers()) {
+            classBytes = ((ILegacyClassTransformer)transformer).transformClassBytes(name, name, classBytes);
+        }
+        return classBytes;
+    }
+    
+    /**
+     * Release resources held by the class path
+     */
+    public void close() {
+        this.classPath.close();
+    }
+    
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getClassProvider()
+     */
+    @Override
+    public IClassProvider getClassProvider() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getBytecodeProvider()
+     */
+    @Override
+    public IClassBytecodeProvider getBytecodeProvider() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getTransformerProvider()
+     */
+    @Override
+    public ITransformerProvider getTransformerProvider() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getClassTracker()
+     */
+    @Override
+    public IClassTracker getClassTracker() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getAuditTrail()
+     */
+    @Override
+    public IMiximAuditTrail getAuditTrail() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getPlatformAgents()
+     */
+    @Override
+    public Collection<String> getPlatformAgents() {
+        return ImmutableList.<String>of();
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getPrimaryContainer()
+     */
+    @Override
+    public IContainerHandle getPrimaryContainer() {
+        return new ContainerHandleVirtual(this.getName());
+    }
+    
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getMiximContainers()
+     */
+    @Override
+    public Collection<IContainerHandle> getMiximContainers() {
+        Builder<IContainerHandle> list = ImmutableList.<IContainerHandle>builder();
+        List<URI> uris = new ArrayList<URI>();
+        for (File file : this.classPath.getFiles()) {
+            if (file.isFile()) {
+                uris.add(file.toURI());
+            }
+        }
+        MainAttributes.prefetch(uris);
+        for (URI uri : uris) {
+            list.add(new ContainerHandleURI(uri));
+        }
+        this.getContainersFromAgents(list);
+        return list.build();
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IMiximService#getResourceAsStream(
+     *      java.lang.String)
+     */
+    @Override
+    public InputStream getResourceAsStream(String name) {
+        InputStream stream = this.classPath.getResourceAsStream(name);
+        if (stream != null) {
+            return stream;
+        }
+        return this.getClass().getClassLoader().getResourceAsStream(name);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassProvider#getClassPath()
+     */
+    @Override
+    @Deprecated
+    public URL[] getClassPath() {
+        return this.classPath.getURLs();
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassProvider#findClass(
+     *      java.lang.String)
+     */
+    @Override
+    public Class<?> findClass(String name) throws ClassNotFoundException {
+        return this.findClass(name, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassProvider#findClass(
+     *      java.lang.String, boolean)
+     */
+    @Override
+    public Class<?> findClass(String name, boolean initialize) throws ClassNotFoundException {
+        return Class.forName(name, initialize, this.getClassLoader());
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassProvider#findAgentClass(
+     *      java.lang.String, boolean)
+     */
+    @Override
+    public Class<?> findAgentClass(String name, boolean initialize) throws ClassNotFoundException {
+        return Class.forName(name, initialize, this.getClass().getClassLoader());
+    }
+    
+    private URLClassLoader getClassLoader() {
+        synchronized (this.classPath) {
+            if (this.classLoader == null) {
+                this.classLoader = new URLClassLoader(this.classPath.getURLs(), this.getClass().getClassLoader());
+            }
+            return this.classLoader;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassBytecodeProvider#getClassNode(
+     *      java.lang.String)
+     */
+    @Override
+    public ClassNode getClassNode(String name) throws ClassNotFoundException, IOException {
+        return this.getClassNode(name, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassBytecodeProvider#getClassNode(
+     *      java.lang.String, boolean)
+     */
+    @Override
+    public ClassNode getClassNode(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        String className = name.replace('/', '.');
+        byte[] classBytes = this.getClassBytes(className);
+        if (classBytes == null) {
+            throw new ClassNotFoundException(String.format("The specified class '%s' was not found", className));
+        }
+        
+        if (runTransformers) {
+            classBytes = this.applyTransformers(className, classBytes);
+        }
+        
+        ClassNode classNode = new ClassNode();
+        ClassReader classReader = new ClassReader(classBytes);
+        classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
+        return classNode;
+    }
+
+    /**
+     * Read class bytes from the class path, falling back to the parent class
+     * loader for platform and library classes which are not on the class path
+     * 
+     * @param className binary class name
+     * @return class bytes or <tt>null</tt> if the class was not found
+     */
+    private byte[] getClassBytes(String className) throws IOException {
+        byte[] classBytes = this.classPath.getClassBytes(className);
+        if (classBytes != null) {
+            return classBytes;
+        }
+        
+        InputStream classStream = null;
+        try {
+            classStream = this.getClass().getClassLoader().getResourceAsStream(className.replace('.', '/') + ".class");
+            return classStream != null ? ByteStreams.toByteArray(classStream) : null;
+        } finally {
+            Closeables.closeQuietly(classStream);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.ITransformerProvider
+     *      #getTransformers()
+     */
+    @Override
+    public Collection<ITransformer> getTransformers() {
+        synchronized (this.transformers) {
+            return Collections.<ITransformer>unmodifiableList(new ArrayList<ITransformer>(this.transformers));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.ITransformerProvider
+     *      #getDelegatedTransformers()
+     */
+    @Override
+    public Collection<ITransformer> getDelegatedTransformers() {
+        List<ITransformer> delegated = new ArrayList<ITransformer>();
+        synchronized (this.transformers) {
+            for (ITransformer transformer : this.transformers) {
+                if (transformer instanceof ILegacyClassTransformer && !transformer.isDelegationExcluded()
+                        && !this.transformerExclusions.contains(transformer.getName())) {
+                    delegated.add(transformer);
+                }
+            }
+        }
+        return delegated;
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.ITransformerProvider
+     *      #addTransformerExclusion(java.lang.String)
+     */
+    @Override
+    public void addTransformerExclusion(String name) {
+        synchronized (this.transformers) {
+            this.transformerExclusions.add(name);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassTracker#registerInvalidClass(
+     *      java.lang.String)
+     */
+    @Override
+    public void registerInvalidClass(String className) {
+        synchronized (this.invalidClasses) {
+            this.invalidClasses.add(className);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassTracker#isClassLoaded(
+     *      java.lang.String)
+     */
+    @Override
+    public boolean isClassLoaded(String className) {
+        synchronized (this.loadedClasses) {
+            return this.loadedClasses.contains(className);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.service.IClassTracker#getClassRestrictions(
+     *      java.lang.String)
+     */
+    @Override
+    public String getClassRestrictions(String className) {
+        return "";
+    }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * This file is part of Mixim, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.service.standalone;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+/**
+ * Ordered set of jars and directories from which the standalone service reads
+ * class bytecode and resources. Containers are opened once when they are added
+ * and entries are resolved in the order the containers were added, much like
+ * a regular classpath.
+ */
+public class StandaloneClassPath {
+    
+    /**
+     * A jar or directory on the class path
+     */
+    abstract static class Source {
+        
+        /**
+         * Root file for this source
+         */
+        protected final File file;
+        
+        Source(File file) {
+            this.file = file;
+        }
+        
+        /**
+         * Get the root file for this source
+         */
+        File getFile() {
+            return this.file;
+        }
+        
+        /**
+         * Get the URL for this source
+         */
+        URL getURL() throws MalformedURLException {
+            return this.file.toURI().toURL();
+        }
+        
+        /**
+         * Get whether the specified entry exists in this source
+         * 
+         * @param path entry path
+         */
+        abstract boolean hasEntry(String path);
+
+        /**
+         * Read the specified entry from this source
+         * 
+         * @param path entry path
+         * @return entry bytes or <tt>null</tt> if the entry does not exist
+         * @throws IOException if the entry cannot be read
+         */
+        abstract byte[] getBytes(String path) throws IOException;
+        
+        /**
+         * Release any resources held by this source
+         */
+        void close() {
+        }
+        
+        @Override
+        public String toString() {
+            return this.file.getAbsolutePath();
+        }
+        
+    }
+    
+    /**
+     * Directory source, entries are read via a file channel
+     */
+    static class DirectorySource extends Source {
+
+        DirectorySource(File file) {
+            super(file);
+        }
+        
+        @Override
+        boolean hasEntry(String path) {
+            return new File(this.file, path).isFile();
+        }
+
+        @Override
+        byte[] getBytes(String path) throws IOException {
+            File entry = new File(this.file, path);
+            if (!entry.isFile()) {
+                return null;
+            }
+
+            FileInputStream in = new FileInputStream(entry);
+            try {
+                FileChannel channel = in.getChannel();
+                ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // read until full
+                }
+                return buffer.array();
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        
+    }
+    
+    /**
+     * Jar source, the zip central directory is read once when the source is
+     * opened and the file is then held open until the class path is closed
+     */
+    static class JarSource extends Source {
+        
+        private final ZipFile zip;
+
+        JarSource(File file) throws IOException {
+            super(file);
+            this.zip = new ZipFile(file);
+        }
+        
+        @Override
+        boolean hasEntry(String path) {
+            return this.zip.getEntry(path) != null;
+        }
+
+        @Override
+        byte[] getBytes(String path) throws IOException {
+            ZipEntry entry = this.zip.getEntry(path);
+            if (entry == null || entry.isDirectory()) {
+                return null;
+            }
+            
+            InputStream in = this.zip.getInputStream(entry);
+            try {
+                return ByteStreams.toByteArray(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+        }
+        
+        @Override
+        void close() {
+            try {
+                this.zip.close();
+            } catch (IOException ex) {
+                // don't care
+            }
+        }
+        
+    }
+    
+    /**
+     * Sources in this class path, in lookup order
+     */
+    private final List<Source> sources = new ArrayList<Source>();
+    
+    /**
+     * Add a jar or directory to the end of this class path. Adding a file
+     * which is already on the class path has no effect.
+     * 
+     * @param file jar or directory to add
+     * @return fluent interface
+     * @throws IOException if the file does not exist or cannot be opened
+     */
+    public synchronized StandaloneClassPath add(File file) throws IOException {
+        File root = file.getAbsoluteFile();
+        for (Source source : this.sources) {
+            if (source.getFile().equals(root)) {
+                return this;
+            }
+        }
+        
+        if (root.isDirectory()) {
+            this.sources.add(new DirectorySource(root));
+        } else if (root.isFile()) {
+            this.sources.add(new JarSource(root));
+        } else {
+            throw new IOException("Class path entry " + root + " does not exist");
+        }
+        return this;
+    }
+    
+    /**
+     * Get whether the specified file is on this class path
+     * 
+     * @param file jar or directory to check
+     */
+    public synchronized boolean contains(File file) {
+        File root = file.getAbsoluteFile();
+        for (Source source : this.sources) {
+            if (source.getFile().equals(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the files which make up this class path, in lookup order
+     */
+    public synchronized List<File> getFiles() {
+        List<File> files = new ArrayList<File>();
+        for (Source source : this.sources) {
+            files.add(source.getFile());
+        }
+        return files;
+    }
+
+    /**
+     * Get the URLs of all sources on this class path, in lookup order
+     */
+    public synchronized URL[] getURLs() {
+        List<URL> urls = new ArrayList<URL>();
+        for (Source source : this.sources) {
+            try {
+                urls.add(source.getURL());
+            } catch (MalformedURLException ex) {
+                // can't happen for a file
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+    
+    /**
+     * Read the bytecode for the specified class
+     * 
+     * @param className class name, either binary or internal form
+     * @return class bytes or <tt>null</tt> if the class was not found
+     * @throws IOException if the class was found but could not be read
+     */
+    public byte[] getClassBytes(String className) throws IOException {
+        return this.getResourceBytes(className.replace('.', '/') + ".class");
+    }
+    
+    /**
+     * Read the specified resource from the first source which contains it
+     * 
+     * @param path resource path, leading slash is optional
+     * @return resource bytes or <tt>null</tt> if the resource was not found
+     * @throws IOException if the resource was found but could not be read
+     */
+    public synchronized byte[] getResourceBytes(String path) throws IOException {
+        String entry = path.startsWith("/") ? path.substring(1) : path;
+        for (Source source : this.sources) {
+            byte[] bytes = source.getBytes(entry);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Open the specified resource from the first source which contains it
+     * 
+     * @param path resource path, leading slash is optional
+     * @return resource stream or <tt>null</tt> if the resource was not found
+     *      or could not be read
+     */
+    public InputStream getResourceAsStream(String path) {
+        try {
+            byte[] bytes = this.getResourceBytes(path);
+            return bytes != null ? new ByteArrayInputStream(bytes) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Close all sources on this class path
+     */
+    public synchronized void close() {
+        for (Source source : this.sources) {
+            source.close();
+        }
+        this.sources.clear();
+    }
+
+}
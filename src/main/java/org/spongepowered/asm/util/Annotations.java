@@ -30,6 +30,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.logging.log4j.LogManager;
@@ -67,10 +69,57 @@ public final class Annotations {
 
     private static final Logger logger = LogManager.getLogger("mixim");
     
+    /**
+     * Descriptors of annotation classes, annotations are looked up by class
+     * far more often than there are distinct annotation classes
+     */
+    private static final Map<Class<?>, String> descriptors = new ConcurrentHashMap<Class<?>, String>();
+    
     private Annotations() {
         // Utility class
     }
 
+    /**
+     * Get the descriptor of the specified annotation class
+     * 
+     * @param annotationClass Annotation class
+     * @return type descriptor of the annotation class
+     */
+    public static String getDesc(Class<? extends Annotation> annotationClass) {
+        String desc = Annotations.descriptors.get(annotationClass);
+        if (desc == null) {
+            desc = Type.getDescriptor(annotationClass);
+            Annotations.descriptors.put(annotationClass, desc);
+        }
+        return desc;
+    }
+
+    /**
+     * Set a runtime-visible annotation of the specified class on the supplied
+     * class node
+     *
+     * @param classNode Target class
+     * @param annotationClass Type of annotation to search for
+     * @param value Values (interleaved key/value pairs) to set
+     */
+    public static void setVisible(ClassNode classNode, Class<? extends Annotation> annotationClass, Object... value) {
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
+        classNode.visibleAnnotations = Annotations.add(classNode.visibleAnnotations, node);
+    }
+    
+    /**
+     * Set an invisible annotation of the specified class on the supplied class
+     * node
+     *
+     * @param classNode Target class
+     * @param annotationClass Type of annotation to search for
+     * @param value Values (interleaved key/value pairs) to set
+     */
+    public static void setInvisible(ClassNode classNode, Class<? extends Annotation> annotationClass, Object... value) {
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
+        classNode.invisibleAnnotations = Annotations.add(classNode.invisibleAnnotations, node);
+    }
+    
     /**
      * Set a runtime-visible annotation of the specified class on the supplied
      * field node
@@ -80,7 +129,7 @@ public final class Annotations {
      * @param value Values (interleaved key/value pairs) to set
      */
     public static void setVisible(FieldNode field, Class<? extends Annotation> annotationClass, Object... value) {
-        AnnotationNode node = Annotations.createNode(Type.getDescriptor(annotationClass), value);
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
         field.visibleAnnotations = Annotations.add(field.visibleAnnotations, node);
     }
     
@@ -93,7 +142,7 @@ public final class Annotations {
      * @param value Values (interleaved key/value pairs) to set
      */
     public static void setInvisible(FieldNode field, Class<? extends Annotation> annotationClass, Object... value) {
-        AnnotationNode node = Annotations.createNode(Type.getDescriptor(annotationClass), value);
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
         field.invisibleAnnotations = Annotations.add(field.invisibleAnnotations, node);
     }
     
@@ -106,7 +155,7 @@ public final class Annotations {
      * @param value Values (interleaved key/value pairs) to set
      */
     public static void setVisible(MethodNode method, Class<? extends Annotation> annotationClass, Object... value) {
-        AnnotationNode node = Annotations.createNode(Type.getDescriptor(annotationClass), value);
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
         method.visibleAnnotations = Annotations.add(method.visibleAnnotations, node);
     }
     
@@ -119,7 +168,7 @@ public final class Annotations {
      * @param value Values (interleaved key/value pairs) to set
      */
     public static void setInvisible(MethodNode method, Class<? extends Annotation> annotationClass, Object... value) {
-        AnnotationNode node = Annotations.createNode(Type.getDescriptor(annotationClass), value);
+        AnnotationNode node = Annotations.createNode(Annotations.getDesc(annotationClass), value);
         method.invisibleAnnotations = Annotations.add(method.invisibleAnnotations, node);
     }
 
@@ -162,7 +211,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getVisible(FieldNode field, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(field.visibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(field.visibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -174,7 +223,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getInvisible(FieldNode field, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(field.invisibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(field.invisibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -186,7 +235,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getVisible(MethodNode method, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(method.visibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(method.visibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -198,7 +247,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getInvisible(MethodNode method, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(method.invisibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(method.invisibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -236,7 +285,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getVisible(ClassNode classNode, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(classNode.visibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(classNode.visibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -248,7 +297,7 @@ public final class Annotations {
      * @return the annotation, or null if not present
      */
     public static AnnotationNode getInvisible(ClassNode classNode, Class<? extends Annotation> annotationClass) {
-        return Annotations.get(classNode.invisibleAnnotations, Type.getDescriptor(annotationClass));
+        return Annotations.get(classNode.invisibleAnnotations, Annotations.getDesc(annotationClass));
     }
 
     /**
@@ -265,7 +314,7 @@ public final class Annotations {
         if (paramIndex < 0) {
             return Annotations.getVisible(method, annotationClass);
         }
-        return Annotations.getParameter(method.visibleParameterAnnotations, Type.getDescriptor(annotationClass), paramIndex);
+        return Annotations.getParameter(method.visibleParameterAnnotations, Annotations.getDesc(annotationClass), paramIndex);
     }
 
     /**
@@ -282,7 +331,7 @@ public final class Annotations {
         if (paramIndex < 0) {
             return Annotations.getInvisible(method, annotationClass);
         }
-        return Annotations.getParameter(method.invisibleParameterAnnotations, Type.getDescriptor(annotationClass), paramIndex);
+        return Annotations.getParameter(method.invisibleParameterAnnotations, Annotations.getDesc(annotationClass), paramIndex);
     }
 
     /**
@@ -316,8 +365,11 @@ public final class Annotations {
             return null;
         }
 
+        // Annotation descriptors share long prefixes, comparing the cached
+        // hashes first avoids most character comparisons
+        int hash = annotationType.hashCode();
         for (AnnotationNode annotation : annotations) {
-            if (annotationType.equals(annotation.desc)) {
+            if (annotation.desc != null && hash == annotation.desc.hashCode() && annotationType.equals(annotation.desc)) {
                 return annotation;
             }
         }
@@ -326,9 +378,13 @@ public final class Annotations {
     }
 
     private static AnnotationNode getSingle(List<AnnotationNode> annotations, Class<? extends Annotation>[] annotationClasses) {
+        if (annotations == null || annotations.isEmpty()) {
+            return null;
+        }
+        
         List<AnnotationNode> nodes = new ArrayList<AnnotationNode>();
         for (Class<? extends Annotation> annotationClass : annotationClasses) {
-            AnnotationNode annotation = Annotations.get(annotations, Type.getDescriptor(annotationClass));
+            AnnotationNode annotation = Annotations.get(annotations, Annotations.getDesc(annotationClass));
             if (annotation != null) {
                 nodes.add(annotation);
             }
@@ -37,6 +37,7 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.launch.platform.CommandLineOptions;
+import org.spongepowered.asm.launch.platform.container.ContainerClassIndex;
 import org.spongepowered.asm.service.IClassBytecodeProvider;
 import org.spongepowered.asm.service.IMiximService;
 import org.spongepowered.asm.service.MiximService;
@@ -74,6 +75,12 @@ public class MiximLaunchPlugin implements ILaunchPluginService, IClassBytecodePr
     
     private ModLauncherAuditTrail auditTrail;
     
+    /**
+     * Index of resources offered by ModLauncher, used to serve bytecode for
+     * classes which the transformer loader cannot provide
+     */
+    private final ContainerClassIndex classIndex = new ContainerClassIndex();
+    
     /* (non-Javadoc)
      * @see cpw.mods.modlauncher.serviceapi.ILaunchPluginService#name()
      */
@@ -168,17 +175,30 @@ public class MiximLaunchPlugin implements ILaunchPluginService, IClassBytecodePr
     @Deprecated
     public void addResource(Path resource, String name) {
         this.service.getPrimaryContainer().addResource(name, resource);
+        this.indexResource(resource);
     }
     
     // ModLauncher 7.0+
     @Override
     public void offerResource(Path resource, String name) {
         this.service.getPrimaryContainer().addResource(name, resource);
+        this.indexResource(resource);
     }
 
     @Override
     public void addResources(List<Entry<String, Path>> resources) {
         this.service.getPrimaryContainer().addResources(resources);
+        for (Entry<String, Path> resource : resources) {
+            this.indexResource(resource.getValue());
+        }
+    }
+    
+    private void indexResource(Path resource) {
+        try {
+            this.classIndex.add(resource.toFile());
+        } catch (UnsupportedOperationException ex) {
+            // Not on the default filesystem, can't be indexed
+        }
     }
 
     /* (non-Javadoc)
@@ -204,35 +224,53 @@ public class MiximLaunchPlugin implements ILaunchPluginService, IClassBytecodePr
 
     @Override
     public ClassNode getClassNode(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+        byte[] classBytes = null;
+        
         if (!runTransformers) {
-            throw new IllegalArgumentException("ModLauncher service does not currently support retrieval of untransformed bytecode");
+            // Untransformed bytecode is only available for indexed resources,
+            // anything else falls back to the transformed class
+            classBytes = this.classIndex.getClassBytes(name);
+            if (classBytes != null) {
+                return this.readClassNode(classBytes);
+            }
         }
         
-        byte[] classBytes;
-        
         try {
             classBytes = this.transformerLoader.buildTransformedClassNodeFor(name);
         } catch (ClassNotFoundException ex) {
-            URL url = Thread.currentThread().getContextClassLoader().getResource(name.replace('.', '/') + ".class");
-            if (url == null) {
-                throw ex;
-            }
-            try {
-                classBytes = Resources.asByteSource(url).read();
-            } catch (IOException ioex) {
-                throw ex;
-            }
+            classBytes = this.getUntransformedClassBytes(name, ex);
         }
         
         if (classBytes == null) {
             throw new ClassNotFoundException(name.replace('/', '.'));
         }
 
+        return this.readClassNode(classBytes);
+    }
+    
+    private ClassNode readClassNode(byte[] classBytes) {
         ClassNode classNode = new ClassNode();
         ClassReader classReader = new ClassReader(classBytes);
         classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
         return classNode;
     }
 
+    private byte[] getUntransformedClassBytes(String name, ClassNotFoundException ex) throws ClassNotFoundException, IOException {
+        byte[] classBytes = this.classIndex.getClassBytes(name);
+        if (classBytes != null) {
+            return classBytes;
+        }
+        
+        URL url = Thread.currentThread().getContextClassLoader().getResource(name.replace('.', '/') + ".class");
+        if (url == null) {
+            throw ex;
+        }
+        try {
+            return Resources.asByteSource(url).read();
+        } catch (IOException ioex) {
+            throw ex;
+        }
+    }
+
 }
  
\ No newline at end of file